@@ -1,5 +1,7 @@
 package de.upb.maven.ecosystem;
 
+import de.upb.maven.ecosystem.transport.Transport;
+import de.upb.maven.ecosystem.transport.rabbitmq.PublisherFlowControl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -19,7 +21,18 @@ public abstract class AbstractCrawler extends RabbitMQCollective {
         getRabbitMQPassFromEnvironment(),
         getWorkerNodeFromEnvironment(),
         DEFAULT_RABBITMQ_REPLY_TO,
-        getActorLimit());
+        PublisherFlowControl.getQueueTargetDepth());
+  }
+
+  /**
+   * Loads the remaining configuration from environment
+   *
+   * @param queueName
+   * @param workerNode
+   * @param transport exchanges the messages instead of rabbitmq
+   */
+  public AbstractCrawler(String queueName, boolean workerNode, Transport transport) {
+    super(queueName, workerNode, transport);
   }
 
   public AbstractCrawler(
@@ -29,7 +42,7 @@ public abstract class AbstractCrawler extends RabbitMQCollective {
       String rabbitmqPass,
       boolean workerNode,
       String replyQueueName,
-      int queue_length) {
+      int queueTargetDepth) {
     super(
         queueName,
         rabbitmqHost,
@@ -37,24 +50,7 @@ public abstract class AbstractCrawler extends RabbitMQCollective {
         rabbitmqPass,
         workerNode,
         replyQueueName,
-        queue_length);
-  }
-
-  @Override
-  public void run() throws Exception {
-    try {
-      super.run();
-    } finally {
-      // in a multi-threaded environment this code is always executed...
-      /// shutdown();
-      Runtime.getRuntime()
-          .addShutdownHook(
-              new Thread() {
-                public void run() {
-                  shutdown();
-                }
-              });
-    }
+        queueTargetDepth);
   }
 
   @Override
@@ -52,6 +52,17 @@ public class ArtifactUtils {
     return constructURL(customArtifactInfo);
   }
 
+  /** @return the artifact as g:a:v-classifier */
+  public static String toGav(CustomArtifactInfo ai) {
+    return ai.getGroupId()
+        + ":"
+        + ai.getArtifactId()
+        + ":"
+        + ai.getArtifactVersion()
+        + "-"
+        + ai.getClassifier();
+  }
+
   public static boolean ignoreArtifact(CustomArtifactInfo ai) {
     // FIXME -- I gues we should only handle artifacts witch classifier =null
     return StringUtils.isNotBlank(ai.getClassifier());
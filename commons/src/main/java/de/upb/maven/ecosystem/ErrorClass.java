@@ -0,0 +1,56 @@
+package de.upb.maven.ecosystem;
+
+import java.io.FileNotFoundException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.neo4j.driver.exceptions.ServiceUnavailableException;
+import org.neo4j.driver.exceptions.SessionExpiredException;
+import org.neo4j.driver.exceptions.TransientException;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+
+/**
+ * The kind of a crawling failure, decides whether and when it is retried, see {@link RetryPolicy}.
+ */
+public enum ErrorClass {
+  /** timeouts, refused connections and 5xx/429 responses of the repository */
+  NETWORK,
+  /** the database is unavailable or asks to retry the transaction */
+  DATABASE,
+  /** missing or broken poms, bugs, everything that fails again on retry */
+  PERMANENT;
+
+  // the message of the IOException the URLConnection throws for an error status
+  private static final Pattern HTTP_STATUS = Pattern.compile("HTTP response code: (\\d{3})");
+
+  /** Classifies the failure by the first cause that is known to be transient or permanent. */
+  public static ErrorClass classify(Throwable failure) {
+    for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+      if (cause instanceof FileNotFoundException) {
+        // 404 of the repository
+        return PERMANENT;
+      }
+      if (cause instanceof SocketTimeoutException
+          || cause instanceof SocketException
+          || cause instanceof UnknownHostException) {
+        return NETWORK;
+      }
+      if (cause instanceof TransientException
+          || cause instanceof ServiceUnavailableException
+          || cause instanceof SessionExpiredException
+          || cause instanceof JedisConnectionException) {
+        return DATABASE;
+      }
+      if (cause.getMessage() != null) {
+        Matcher matcher = HTTP_STATUS.matcher(cause.getMessage());
+        if (matcher.find()) {
+          int status = Integer.parseInt(matcher.group(1));
+          return status >= 500 || status == 429 || status == 408 ? NETWORK : PERMANENT;
+        }
+      }
+    }
+    return PERMANENT;
+  }
+}
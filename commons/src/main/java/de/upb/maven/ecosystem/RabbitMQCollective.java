@@ -1,44 +1,50 @@
 package de.upb.maven.ecosystem;
 
-import com.rabbitmq.client.AMQP;
-import com.rabbitmq.client.Channel;
-import com.rabbitmq.client.Connection;
-import com.rabbitmq.client.ConnectionFactory;
-import com.rabbitmq.client.DefaultConsumer;
-import com.rabbitmq.client.DeliverCallback;
-import com.rabbitmq.client.Delivery;
-import com.rabbitmq.client.Envelope;
+import de.upb.maven.ecosystem.msg.ArtifactBatchResult;
+import de.upb.maven.ecosystem.msg.ArtifactResult;
+import de.upb.maven.ecosystem.transport.Message;
+import de.upb.maven.ecosystem.transport.Transport;
+import de.upb.maven.ecosystem.transport.rabbitmq.PublisherFlowControl;
+import de.upb.maven.ecosystem.transport.rabbitmq.RabbitMQTransport;
 import java.io.IOException;
-import java.io.UnsupportedEncodingException;
-import java.net.Socket;
-import java.nio.charset.StandardCharsets;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.TimeoutException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-/** Superclass to bootstrap rabbitmq collectives */
+/**
+ * Superclass to bootstrap rabbitmq collectives. The messages are exchanged by a {@link Transport},
+ * which is the rabbitmq broker unless another transport is passed in.
+ *
+ * <p>On shutdown, e.g., SIGTERM on redeploy, the collective drains: a worker stops consuming and
+ * finishes the artifacts in flight, a producer stops publishing at {@link #isDraining()} and
+ * persists its position. Both wait for at most {@link #getDrainTimeoutMs()}. A transport that is
+ * passed in is shared, e.g., by the producer and the workers of the same JVM, thus, its owner
+ * drains both collectives in order and closes it.
+ */
 public abstract class RabbitMQCollective {
   public static final String DEFAULT_RABBITMQ_REPLY_TO = "amq.rabbitmq.reply-to";
-  public static final int PREFETCH_COUNT = 1;
+  public static final int DEFAULT_WORKER_THREADS = 1;
+  private static final long CONFIRM_TIMEOUT_MS = 60_000;
   private static final Logger logger = LoggerFactory.getLogger(RabbitMQCollective.class);
   private final String queueName;
   private final String replyQueue;
-  private final int queue_length;
+  private final int queueTargetDepth;
   private final String rabbitmqUser;
   private final String rabbitmqPass;
   private final boolean workerNode;
   private final String rabbitmqHost;
 
-  /**
-   * This queue is used to reduce back pressure to the workers. It will only allow a fixed amount of
-   * messages queued with rabbit and block the enqueueing thread until there is place in the queue
-   * again.
-   */
-  private ArrayBlockingQueue<Object> actor_queue;
+  private Transport transport;
+  // false if the transport is passed in and closed by its owner
+  private boolean ownsTransport = true;
+
+  private volatile boolean draining = false;
+  private final CountDownLatch producerDone = new CountDownLatch(1);
 
-  private Channel activeChannel;
+  /** Processes the deliveries of a worker node, sized by {@link #getWorkerThreads()}. */
+  private ExecutorService workerExecutor;
 
   /**
    * Uses environment variables to infer field values
@@ -53,7 +59,28 @@ public abstract class RabbitMQCollective {
         getRabbitMQPassFromEnvironment(),
         getWorkerNodeFromEnvironment(),
         DEFAULT_RABBITMQ_REPLY_TO,
-        getActorLimit());
+        PublisherFlowControl.getQueueTargetDepth());
+  }
+
+  /**
+   * Uses environment variables to infer the remaining field values
+   *
+   * @param queueName
+   * @param workerNode
+   * @param transport exchanges the messages instead of rabbitmq, e.g., with the workers in the same
+   *     JVM
+   */
+  public RabbitMQCollective(String queueName, boolean workerNode, Transport transport) {
+    this(
+        queueName,
+        getRabbitMQHostFromEnvironment(),
+        getRabbitMQUserFromEnvironment(),
+        getRabbitMQPassFromEnvironment(),
+        workerNode,
+        DEFAULT_RABBITMQ_REPLY_TO,
+        PublisherFlowControl.getQueueTargetDepth());
+    this.transport = transport;
+    this.ownsTransport = false;
   }
 
   public RabbitMQCollective(
@@ -63,19 +90,37 @@ public abstract class RabbitMQCollective {
       String rabbitmqPass,
       boolean workerNode,
       String replyQueueName,
-      int queue_length) {
+      int queueTargetDepth) {
     this.rabbitmqUser = rabbitmqUser;
     this.rabbitmqPass = rabbitmqPass;
     this.workerNode = workerNode;
     this.rabbitmqHost = rabbitmqHost;
     this.queueName = queueName;
     this.replyQueue = replyQueueName;
-    this.queue_length = queue_length;
+    this.queueTargetDepth = queueTargetDepth;
 
     logger.info("rabbitmqHost: {}", rabbitmqHost);
     logger.info("rabbitmqUser: {}", rabbitmqUser);
     logger.info("workerNode: {}", workerNode);
-    logger.info("ACTOR_LIMIT: {}", queue_length);
+    if (!workerNode) {
+      logger.info("QUEUE_TARGET_DEPTH: {}", queueTargetDepth);
+      logger.info("MAX_UNCONFIRMED: {}", PublisherFlowControl.getMaxUnconfirmed());
+      logger.info("QUEUE_SAMPLE_INTERVAL_MS: {}", PublisherFlowControl.getSampleIntervalMs());
+    } else {
+      logger.info("WORKER_EXECUTOR: {}", getWorkerExecutorMode());
+      logger.info("WORKER_THREADS: {}", getWorkerThreads());
+      logger.info("PREFETCH_COUNT: {}", getPrefetchCount());
+    }
+    logger.info("SHARD_COUNT: {}", ShardRouting.getShardCount());
+  }
+
+  /** Time to finish the artifacts in flight on shutdown, defaults to 60 s. */
+  public static long getDrainTimeoutMs() {
+    String res = System.getenv("DRAIN_TIMEOUT_MS");
+    if (res == null || res.isEmpty()) {
+      return 60_000;
+    }
+    return Long.parseLong(res);
   }
 
   public static String getRabbitMQHostFromEnvironment() {
@@ -115,97 +160,219 @@ public abstract class RabbitMQCollective {
     return workerNode;
   }
 
-  public static int getActorLimit() {
-    String res = System.getenv("ACTOR_LIMIT");
-    int actorLimit;
+  /**
+   * Number of artifacts a single worker processes concurrently. Defaults to {@link
+   * #DEFAULT_WORKER_THREADS}, which results in the old one-artifact-at-a-time behaviour. With
+   * virtual threads this is the cap on artifacts in flight, not the number of threads.
+   */
+  public static int getWorkerThreads() {
+    String res = System.getenv("WORKER_THREADS");
+    int workerThreads;
     if (res == null || res.isEmpty()) {
-      actorLimit = 20;
+      workerThreads = DEFAULT_WORKER_THREADS;
     } else {
-      actorLimit = Integer.parseInt(res);
+      workerThreads = Integer.parseInt(res);
     }
-    return actorLimit;
+    return Math.max(1, workerThreads);
   }
 
-  private static boolean reachable() {
-    try (Socket ignored = new Socket(getRabbitMQHostFromEnvironment(), 5672)) {
-      return true;
-    } catch (IOException ignored) {
-      return false;
+  /**
+   * Kind of threads the worker jobs run on, either PLATFORM (default) or VIRTUAL. Virtual threads
+   * are only used if the JVM supports them.
+   */
+  public static WorkerExecutors.Mode getWorkerExecutorMode() {
+    String res = System.getenv("WORKER_EXECUTOR");
+    if (res == null || res.isEmpty()) {
+      return WorkerExecutors.Mode.PLATFORM;
     }
+    return WorkerExecutors.Mode.valueOf(res.toUpperCase());
   }
 
-  protected void runWorker(Channel channel) throws IOException, TimeoutException {
-    DeliverCallback deliverCallback =
-        (consumerTag, delivery) -> {
-          try {
-            doWorkerJob(delivery);
-          } catch (Exception e) {
-            logger.error("[Worker] job failed...", e);
-          } finally {
-            channel.basicPublish(
-                "", delivery.getProperties().getReplyTo(), null, "Polo".getBytes());
-
-            channel.basicAck(delivery.getEnvelope().getDeliveryTag(), false);
-            logger.info("[Worker] Send Ack");
-          }
-        };
-    channel.basicConsume(getQueueName(), false, deliverCallback, consumerTag -> {});
+  /**
+   * Number of unacknowledged messages rabbitmq pushes to a worker. Defaults to the number of worker
+   * threads, so that every thread has an artifact in flight.
+   */
+  public static int getPrefetchCount() {
+    String res = System.getenv("PREFETCH_COUNT");
+    int prefetchCount;
+    if (res == null || res.isEmpty()) {
+      prefetchCount = getWorkerThreads();
+    } else {
+      prefetchCount = Integer.parseInt(res);
+    }
+    return Math.max(1, prefetchCount);
   }
 
-  protected abstract void doWorkerJob(Delivery delivery) throws IOException;
+  protected void runWorker(Transport transport) throws IOException {
+    final int workerThreads = getWorkerThreads();
+    logger.info("[Worker] Processing {} artifacts concurrently", workerThreads);
+    workerExecutor = WorkerExecutors.create(getWorkerExecutorMode(), workerThreads, "worker");
+    transport.consume(this::doWorkerJob, workerExecutor, workerThreads);
+  }
 
-  protected void runProducer(Channel channel) throws Exception {
-    setupResponseListener(channel);
+  /**
+   * Processes a single message.
+   *
+   * @return the reply to the producer, e.g., with a {@link ArtifactBatchResult}, or null to send no
+   *     reply
+   */
+  protected abstract Message doWorkerJob(Message message) throws IOException;
+
+  protected void runProducer(Transport transport) throws Exception {
+    try {
+      transport.startProducer(this::logBatchResult);
+      doProducerJob();
+      if (!awaitDelivered(CONFIRM_TIMEOUT_MS)) {
+        logger.warn("[Producer] Not all messages were delivered");
+      }
+    } finally {
+      producerDone.countDown();
+    }
+  }
 
-    AMQP.BasicProperties props =
-        new AMQP.BasicProperties.Builder().replyTo(getReplyQueue()).build();
+  /**
+   * Blocks until the enqueued messages are handed over to the transport.
+   *
+   * @return false if the timeout elapsed before
+   */
+  public boolean awaitDelivered(long timeoutMs) throws InterruptedException {
+    return transport.awaitDelivered(timeoutMs);
+  }
 
-    doProducerJob(props);
+  /** @return true once the process is shutting down, the producer must stop enqueueing */
+  public boolean isDraining() {
+    return draining;
   }
 
-  protected abstract void doProducerJob(AMQP.BasicProperties props) throws Exception;
-
-  private void setupResponseListener(Channel channel) throws IOException {
-    final BlockingQueue<String> response = new ArrayBlockingQueue<>(1);
-
-    channel.basicConsume(
-        getReplyQueue(),
-        true,
-        new DefaultConsumer(channel) {
-          @Override
-          public void handleDelivery(
-              String consumerTag, Envelope envelope, AMQP.BasicProperties properties, byte[] body)
-              throws UnsupportedEncodingException {
-            logger.info("[Producer] Received Ack");
-            response.offer(new String(body, StandardCharsets.UTF_8));
-            actor_queue.poll();
-            logger.info("[Producer] Removed Element from Queue");
-          }
-        });
+  /**
+   * Lets the producer or the workers finish, then releases the resources. Runs on shutdown, unless
+   * the collective is started by {@link #run(boolean)} without the shutdown hook.
+   */
+  public void drain() {
+    draining = true;
+    final long timeoutMs = getDrainTimeoutMs();
+    logger.info("Draining for at most {} ms", timeoutMs);
+    try {
+      final boolean drained =
+          workerNode
+              ? transport.drain(timeoutMs)
+              : producerDone.await(timeoutMs, TimeUnit.MILLISECONDS);
+      if (!drained) {
+        logger.warn("Drain timed out, unfinished messages are redelivered");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    shutdown();
+    if (workerExecutor != null) {
+      workerExecutor.shutdown();
+    }
+    if (ownsTransport) {
+      try {
+        transport.close();
+      } catch (IOException e) {
+        logger.warn("Failed to close the transport", e);
+      }
+    }
+    logger.info("Drained");
   }
 
-  protected void run() throws Exception {
-    logger.info("Check if rabbitmq is up and running");
-    boolean rabbitIsAvailable = false;
-    while (!rabbitIsAvailable) {
-      rabbitIsAvailable = reachable();
-      if (!rabbitIsAvailable) {
-        logger.info("rabbitmq is not available waiting for {} sec", 30);
-        Thread.sleep(1000 * 30);
+  protected abstract void doProducerJob() throws Exception;
+
+  private void logBatchResult(Message reply) {
+    if (!ArtifactBatchResult.MESSAGE_TYPE.equals(reply.getType())) {
+      // the reply of an older worker
+      return;
+    }
+    try {
+      final ArtifactBatchResult result = reply.getPayload(ArtifactBatchResult.class);
+      logger.info(
+          "[Producer] Batch of {} artifacts finished with {} failures",
+          result.getResults().size(),
+          result.countFailures());
+      for (ArtifactResult artifactResult : result.getResults()) {
+        if (!artifactResult.isSuccess()) {
+          logger.warn(
+              "[Producer] Crawling {} failed: {}",
+              artifactResult.getGav(),
+              artifactResult.getMessage());
+        }
       }
+    } catch (IOException e) {
+      logger.warn("[Producer] Could not parse reply", e);
     }
+  }
+
+  public void run() throws Exception {
+    run(true);
+  }
 
+  /**
+   * Runs the producer job, or starts the workers.
+   *
+   * @param drainOnShutdown false if the caller registers a shutdown hook that invokes {@link
+   *     #drain()}, e.g., to drain the producer before the workers of the same JVM
+   */
+  public void run(boolean drainOnShutdown) throws Exception {
     logger.info("Execute pre-flight check");
     preFlightCheck();
-    activeChannel = createChannel();
+    createTransport();
+    if (drainOnShutdown) {
+      Runtime.getRuntime().addShutdownHook(new Thread(this::drain, "drain"));
+    }
     if (!workerNode) {
       logger.info("[Producer] Run Producer");
-      actor_queue = new ArrayBlockingQueue<>(queue_length);
-      runProducer(activeChannel);
+      runProducer(transport);
     } else {
       logger.info("[Worker] Run Worker");
-      runWorker(activeChannel);
-      // usually only consumer define a prefetch counts
+      runWorker(transport);
+    }
+  }
+
+  private void createTransport() {
+    if (transport == null) {
+      transport =
+          new RabbitMQTransport(
+              rabbitmqHost,
+              rabbitmqUser,
+              rabbitmqPass,
+              queueName,
+              replyQueue,
+              queueTargetDepth,
+              getPrefetchCount(),
+              ShardRouting.getShardCount());
+    }
+  }
+
+  /**
+   * Moves the dead letters of the queue back to the workers, e.g., once an outage is over.
+   *
+   * @param limit maximal number of messages to replay
+   * @return the number of replayed messages
+   */
+  public int replayDeadLetters(int limit) throws IOException, InterruptedException {
+    createTransport();
+    return transport.replayDeadLetters(limit);
+  }
+
+  /**
+   * Retries the failed message with the backoff of the {@link RetryPolicy} of its error class, or
+   * moves it to the dead-letter queue once its retries are exhausted.
+   *
+   * @param failed the message to retry, e.g., a single artifact of a failed batch
+   * @param reason the failure
+   */
+  protected void retryOrDeadLetter(Message failed, ErrorClass errorClass, String reason)
+      throws IOException, InterruptedException {
+    final RetryPolicy policy = RetryPolicy.of(errorClass);
+    final int attempt = failed.getAttempt();
+    if (policy.shouldRetry(attempt)) {
+      final long delayMs = policy.delayMs(attempt);
+      logger.info("[Worker] Retry #{} of {} failure in {} ms", attempt + 1, errorClass, delayMs);
+      transport.retry(failed.withAttempt(attempt + 1), delayMs);
+    } else {
+      logger.warn("[Worker] Dead letter after {} retries of {} failure", attempt, errorClass);
+      transport.deadLetter(failed, errorClass + ": " + reason);
     }
   }
 
@@ -215,45 +382,6 @@ public abstract class RabbitMQCollective {
    */
   protected abstract void preFlightCheck();
 
-  private Channel createChannel() throws IOException, TimeoutException {
-    ConnectionFactory factory = new ConnectionFactory();
-    factory.setHost(rabbitmqHost);
-    /*  factory.setAutomaticRecoveryEnabled(true);
-    // attempt recovery every 10 seconds
-    factory.setNetworkRecoveryInterval(10000);*/
-    factory.setUsername(rabbitmqUser);
-    factory.setPassword(rabbitmqPass);
-
-    // do not call in try block like above, otherwise the channel is closed after the loop
-    Connection connection = factory.newConnection();
-    connection.addShutdownListener(
-        cause -> {
-          logger.info("Received Connection Shutdown signal with cause: " + cause.getMessage());
-          RabbitMQCollective.this.shutdown();
-          final boolean hardError = cause.isHardError();
-          int signal = -1;
-
-          System.exit(signal);
-        });
-
-    Channel channel = connection.createChannel();
-
-    channel.addShutdownListener(
-        cause -> {
-          logger.info("Received Channel Shutdown signal with cause: " + cause.getMessage());
-          RabbitMQCollective.this.shutdown();
-          final boolean hardError = cause.isHardError();
-          int signal = -1;
-
-          System.exit(signal);
-        });
-
-    channel.queueDeclare(queueName, false, false, false, null);
-    channel.basicQos(PREFETCH_COUNT);
-
-    return channel;
-  }
-
   public String getReplyQueue() {
     return replyQueue;
   }
@@ -263,22 +391,20 @@ public abstract class RabbitMQCollective {
   }
 
   /**
-   * Enqueues the given body to the rabbit queue.
+   * Enqueues the given message to the queue of the workers. Blocks while the workers are behind.
    *
-   * @param props Rabbit props acquired in the producer job
-   * @param body Body of the message that should be enqueued
+   * @param message the message that should be enqueued
    * @throws InterruptedException
    * @throws IOException
    */
-  public void enqueue(AMQP.BasicProperties props, byte[] body)
-      throws IOException, InterruptedException {
-    actor_queue.put(body);
-    activeChannel.basicPublish("", getQueueName(), props, body);
+  public void enqueue(Message message) throws IOException, InterruptedException {
+    transport.publish(message);
   }
 
   public boolean isWorkerNode() {
     return workerNode;
   }
 
+  /** Releases the resources once the collective has drained on shutdown. */
   protected abstract void shutdown();
 }
@@ -0,0 +1,66 @@
+package de.upb.maven.ecosystem;
+
+/**
+ * How often and after which delay a failed message is retried. The delay doubles with every attempt
+ * up to the maximal delay. Once the retries are exhausted the message goes to the dead-letter
+ * queue, from which it can be replayed. The defaults are overridden per error class by the
+ * variables RETRY_&lt;CLASS&gt;_MAX_RETRIES, the retries after the first attempt,
+ * RETRY_&lt;CLASS&gt;_BASE_DELAY_MS and RETRY_&lt;CLASS&gt;_MAX_DELAY_MS, e.g.,
+ * RETRY_NETWORK_MAX_RETRIES.
+ */
+public class RetryPolicy {
+  private final int maxRetries;
+  private final long baseDelayMs;
+  private final long maxDelayMs;
+
+  /**
+   * @param maxRetries number of retries after the first attempt, 0 to dead-letter right away
+   * @param baseDelayMs delay before the first retry
+   * @param maxDelayMs upper bound of the delay
+   */
+  public RetryPolicy(int maxRetries, long baseDelayMs, long maxDelayMs) {
+    this.maxRetries = Math.max(0, maxRetries);
+    this.baseDelayMs = Math.max(1, baseDelayMs);
+    this.maxDelayMs = Math.max(this.baseDelayMs, maxDelayMs);
+  }
+
+  public static RetryPolicy of(ErrorClass errorClass) {
+    switch (errorClass) {
+      case NETWORK:
+        // the repository may be down for a while
+        return fromEnvironment(errorClass, 6, 30_000, 30 * 60_000);
+      case DATABASE:
+        return fromEnvironment(errorClass, 5, 5_000, 5 * 60_000);
+      default:
+        return fromEnvironment(errorClass, 0, 60_000, 60_000);
+    }
+  }
+
+  private static RetryPolicy fromEnvironment(
+      ErrorClass errorClass, int maxRetries, long baseDelayMs, long maxDelayMs) {
+    final String prefix = "RETRY_" + errorClass.name() + "_";
+    return new RetryPolicy(
+        (int) getLong(prefix + "MAX_RETRIES", maxRetries),
+        getLong(prefix + "BASE_DELAY_MS", baseDelayMs),
+        getLong(prefix + "MAX_DELAY_MS", maxDelayMs));
+  }
+
+  private static long getLong(String name, long defaultValue) {
+    String res = System.getenv(name);
+    if (res == null || res.isEmpty()) {
+      return defaultValue;
+    }
+    return Long.parseLong(res);
+  }
+
+  /** @param attempt the number of retries the failed message already had */
+  public boolean shouldRetry(int attempt) {
+    return attempt < maxRetries;
+  }
+
+  /** @param attempt the number of retries the failed message already had */
+  public long delayMs(int attempt) {
+    // doubling more than 30 times exceeds any sensible maximal delay
+    return Math.min(maxDelayMs, baseDelayMs << Math.min(attempt, 30));
+  }
+}
@@ -0,0 +1,73 @@
+package de.upb.maven.ecosystem;
+
+import com.google.common.hash.Hashing;
+import de.upb.maven.ecosystem.msg.CustomArtifactInfo;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Routes the artifacts of a group to the same shard queue. As every worker consumes a stable subset
+ * of the shards, the parent poms and boms of a group are mostly resolved by the same worker. The
+ * producer and the workers must use the same SHARD_COUNT.
+ */
+public class ShardRouting {
+
+  public enum Key {
+    /** all artifacts of a groupId share a shard */
+    GROUP,
+    /** all versions of a groupId:artifactId share a shard */
+    GROUP_ARTIFACT
+  }
+
+  /** Number of shard queues, defaults to 1, the single unsharded queue. */
+  public static int getShardCount() {
+    String res = System.getenv("SHARD_COUNT");
+    if (res == null || res.isEmpty()) {
+      return 1;
+    }
+    return Math.max(1, Integer.parseInt(res));
+  }
+
+  public static Key getShardKey() {
+    String res = System.getenv("SHARD_BY");
+    if (res == null || res.isEmpty()) {
+      return Key.GROUP;
+    }
+    return Key.valueOf(res.toUpperCase());
+  }
+
+  /**
+   * Uses jump consistent hashing, thus, only a minimal share of the keys moves if the shard count
+   * changes.
+   *
+   * @return the shard of the artifact in [0, shardCount)
+   */
+  public static int shardOf(CustomArtifactInfo artifactInfo, Key key, int shardCount) {
+    if (shardCount <= 1) {
+      return 0;
+    }
+    String routingKey = artifactInfo.getGroupId();
+    if (key == Key.GROUP_ARTIFACT) {
+      routingKey += ":" + artifactInfo.getArtifactId();
+    }
+    return Hashing.consistentHash(
+        Hashing.murmur3_128().hashString(routingKey, StandardCharsets.UTF_8), shardCount);
+  }
+
+  /** @return the queue name of the shard, the base queue name if there is a single shard */
+  public static String queueName(String baseQueueName, int shard, int shardCount) {
+    if (shardCount <= 1) {
+      return baseQueueName;
+    }
+    return baseQueueName + ".shard-" + shard;
+  }
+
+  public static List<String> queueNames(String baseQueueName, int shardCount) {
+    List<String> queueNames = new ArrayList<>();
+    for (int shard = 0; shard < Math.max(1, shardCount); shard++) {
+      queueNames.add(queueName(baseQueueName, shard, shardCount));
+    }
+    return queueNames;
+  }
+}
@@ -0,0 +1,128 @@
+package de.upb.maven.ecosystem;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** Creates the executor that runs the jobs of a worker node. */
+public class WorkerExecutors {
+  private static final Logger logger = LoggerFactory.getLogger(WorkerExecutors.class);
+
+  public enum Mode {
+    /** A fixed pool of platform threads, one per concurrently processed artifact. */
+    PLATFORM,
+    /**
+     * One virtual thread per artifact. The crawling is almost all blocking I/O (pom downloads and
+     * bolt round trips), so many artifacts can overlap on a handful of carrier threads.
+     */
+    VIRTUAL
+  }
+
+  /**
+   * @param mode the kind of threads to run the jobs on
+   * @param concurrency maximal number of jobs that run at the same time
+   * @param name prefix of the thread names
+   */
+  public static ExecutorService create(Mode mode, int concurrency, String name) {
+    if (mode == Mode.VIRTUAL) {
+      final ExecutorService virtualExecutor = newVirtualThreadPerTaskExecutor();
+      if (virtualExecutor != null) {
+        logger.info("Using virtual threads, at most {} jobs in flight", concurrency);
+        return new BoundedExecutorService(virtualExecutor, concurrency);
+      }
+      logger.warn(
+          "Virtual threads require Java 21, running on Java {}, falling back to platform threads"
+              + " (build the image with -Ddocker.base.image=eclipse-temurin:21-jre)",
+          System.getProperty("java.version"));
+    }
+    // the queue is unbounded, but the broker never pushes more than the prefetch count
+    return new ThreadPoolExecutor(
+        concurrency,
+        concurrency,
+        0L,
+        TimeUnit.MILLISECONDS,
+        new LinkedBlockingQueue<>(),
+        new ThreadFactoryBuilder().setNameFormat(name + "-%d").build());
+  }
+
+  /**
+   * The project is compiled for Java 8, thus, the virtual thread API is looked up reflectively.
+   *
+   * @return the executor or null if the running JVM does not support virtual threads
+   */
+  private static ExecutorService newVirtualThreadPerTaskExecutor() {
+    try {
+      final Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return (ExecutorService) method.invoke(null);
+    } catch (ReflectiveOperationException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Caps the number of concurrently running tasks. The permit is acquired inside the task, as
+   * blocking is cheap on a virtual thread, while the submitting (rabbitmq dispatch) thread is never
+   * blocked.
+   */
+  private static class BoundedExecutorService extends AbstractExecutorService {
+    private final ExecutorService delegate;
+    private final Semaphore permits;
+
+    BoundedExecutorService(ExecutorService delegate, int concurrency) {
+      this.delegate = delegate;
+      this.permits = new Semaphore(concurrency);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+      delegate.execute(
+          () -> {
+            try {
+              permits.acquire();
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+              return;
+            }
+            try {
+              command.run();
+            } finally {
+              permits.release();
+            }
+          });
+    }
+
+    @Override
+    public void shutdown() {
+      delegate.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+      return delegate.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+      return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+      return delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+      return delegate.awaitTermination(timeout, unit);
+    }
+  }
+}
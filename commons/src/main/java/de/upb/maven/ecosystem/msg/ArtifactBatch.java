@@ -0,0 +1,24 @@
+package de.upb.maven.ecosystem.msg;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Envelope to send many artifacts with a single message. Batches are marked with the {@link
+ * #MESSAGE_TYPE} message type, messages without a type contain a single {@link CustomArtifactInfo}.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown = true)
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ArtifactBatch {
+  public static final String MESSAGE_TYPE = "artifact-batch";
+
+  private List<CustomArtifactInfo> artifacts = new ArrayList<>();
+}
@@ -0,0 +1,25 @@
+package de.upb.maven.ecosystem.msg;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** Reply of a worker to an {@link ArtifactBatch}, with one result per artifact. */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown = true)
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ArtifactBatchResult {
+  public static final String MESSAGE_TYPE = "artifact-batch-result";
+
+  private List<ArtifactResult> results = new ArrayList<>();
+
+  public long countFailures() {
+    return results.stream().filter(x -> !x.isSuccess()).count();
+  }
+}
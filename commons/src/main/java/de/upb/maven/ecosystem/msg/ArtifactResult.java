@@ -0,0 +1,29 @@
+package de.upb.maven.ecosystem.msg;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import de.upb.maven.ecosystem.ErrorClass;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** Outcome of crawling a single artifact of an {@link ArtifactBatch}. */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown = true)
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ArtifactResult {
+
+  // g:a:v-classifier of the artifact
+  private String gav;
+  private boolean success;
+  // the failure message, if any
+  private String message;
+  // the kind of the failure, if any
+  private ErrorClass errorClass;
+
+  public ArtifactResult(String gav, boolean success, String message) {
+    this(gav, success, message, null);
+  }
+}
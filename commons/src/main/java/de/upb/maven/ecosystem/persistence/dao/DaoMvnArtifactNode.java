@@ -2,8 +2,10 @@ package de.upb.maven.ecosystem.persistence.dao;
 
 import com.google.common.base.Optional;
 import de.upb.maven.ecosystem.persistence.model.DependencyRelation;
+import de.upb.maven.ecosystem.persistence.model.Gavc;
 import de.upb.maven.ecosystem.persistence.model.MvnArtifactNode;
 import java.util.List;
+import java.util.function.BiConsumer;
 
 public interface DaoMvnArtifactNode extends Dao<MvnArtifactNode> {
 
@@ -17,6 +19,21 @@ public interface DaoMvnArtifactNode extends Dao<MvnArtifactNode> {
   boolean containsNodeWithVersionGQ(
       String groupId, String artifactId, String version, String classifier, String crawlerVersion);
 
+  /**
+   * Bulk variant of {@link #containsNodeWithVersionGQ(String, String, String, String, String)} that
+   * checks all artifacts with a single query.
+   *
+   * @return the artifacts that are missing, crawled by an older version, or not fully resolved
+   */
+  List<Gavc> findMissingOrStale(List<Gavc> gavcs, String crawlerVersion);
+
+  /**
+   * Streams the coordinates of all artifacts, without loading them into memory at once, and if the
+   * node is crawled by the given or a newer version and fully resolved. Coordinates may occur
+   * several times, {@link #findMissingOrStale(List, String)} treats them as stale.
+   */
+  void forEachArtifact(String crawlerVersion, BiConsumer<Gavc, Boolean> action);
+
   List<DependencyRelation> getDependencyManagement(MvnArtifactNode instance);
 
   List<MvnArtifactNode> getDependents(
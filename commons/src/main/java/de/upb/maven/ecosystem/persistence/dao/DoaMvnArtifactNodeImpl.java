@@ -9,6 +9,7 @@ import com.google.common.base.Optional;
 import com.google.common.base.Stopwatch;
 import de.upb.maven.ecosystem.persistence.model.DependencyRelation;
 import de.upb.maven.ecosystem.persistence.model.DependencyScope;
+import de.upb.maven.ecosystem.persistence.model.Gavc;
 import de.upb.maven.ecosystem.persistence.model.MvnArtifactNode;
 import java.time.Duration;
 import java.util.ArrayDeque;
@@ -22,6 +23,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -953,6 +955,78 @@ public class DoaMvnArtifactNodeImpl implements DaoMvnArtifactNode {
     return upToDate & fullResolved;
   }
 
+  @Override
+  public List<Gavc> findMissingOrStale(List<Gavc> gavcs, String crawlerVersion) {
+    if (gavcs.isEmpty()) {
+      return Collections.emptyList();
+    }
+    List<Map<String, Object>> rows = new ArrayList<>(gavcs.size());
+    for (int i = 0; i < gavcs.size(); i++) {
+      final Gavc gavc = gavcs.get(i);
+      Map<String, Object> row = new HashMap<>();
+      row.put("i", i);
+      row.put("group", gavc.getGroup());
+      row.put("artifact", gavc.getArtifact());
+      row.put("version", gavc.getVersion());
+      // neo4j cannot deal with null values
+      row.put(
+          "classifier", StringUtils.isBlank(gavc.getClassifier()) ? "null" : gavc.getClassifier());
+      rows.add(row);
+    }
+    HashMap<String, Object> parameters = new HashMap<>();
+    parameters.put("rows", rows);
+    parameters.put("crawlerVersion", crawlerVersion);
+    parameters.put("full", MvnArtifactNode.ResolvingLevel.FULL.toString());
+    // like the single check, an ambiguous match counts as stale
+    String query =
+        "UNWIND $rows AS row"
+            + " OPTIONAL MATCH (n:MvnArtifact {group:row.group, artifact:row.artifact,"
+            + " version:row.version, classifier:row.classifier})"
+            + " WITH row, collect(n) AS nodes"
+            + " WHERE size(nodes) <> 1"
+            + " OR NOT (coalesce(nodes[0].crawlerVersion, '') >= $crawlerVersion"
+            + " AND coalesce(nodes[0].resolvingLevel, '') = $full)"
+            + " RETURN row.i";
+    try (Session session = driver.session()) {
+      return session.readTransaction(
+          tx -> {
+            Result result = tx.run(query, parameters);
+            List<Gavc> missing = new ArrayList<>();
+            while (result.hasNext()) {
+              missing.add(gavcs.get(result.next().get(0).asInt()));
+            }
+            return missing;
+          });
+    }
+  }
+
+  @Override
+  public void forEachArtifact(String crawlerVersion, BiConsumer<Gavc, Boolean> action) {
+    HashMap<String, Object> parameters = new HashMap<>();
+    parameters.put("crawlerVersion", crawlerVersion);
+    parameters.put("full", MvnArtifactNode.ResolvingLevel.FULL.toString());
+    // no aggregation, thus, the server streams the nodes, the caller handles duplicates
+    String query =
+        "MATCH (n:MvnArtifact)"
+            + " RETURN n.group, n.artifact, n.version, n.classifier,"
+            + " (coalesce(n.crawlerVersion, '') >= $crawlerVersion"
+            + " AND coalesce(n.resolvingLevel, '') = $full) AS upToDate";
+    try (Session session = driver.session()) {
+      // the records are pulled in batches while iterating
+      Result result = session.run(query, parameters);
+      while (result.hasNext()) {
+        final Record record = result.next();
+        action.accept(
+            new Gavc(
+                record.get(0).asString(null),
+                record.get(1).asString(null),
+                record.get(2).asString(null),
+                record.get(3).asString(null)),
+            record.get(4).asBoolean(false));
+      }
+    }
+  }
+
   @Override
   public List<DependencyRelation> getDependencyManagement(MvnArtifactNode instance) {
     HashMap<String, Object> parameters = new HashMap<>();
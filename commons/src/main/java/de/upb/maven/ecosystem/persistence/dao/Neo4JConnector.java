@@ -39,7 +39,7 @@ public class Neo4JConnector {
     return res;
   }
 
-  public static Driver getDriver() {
+  public static synchronized Driver getDriver() {
     if (instance == null) {
       instance =
           GraphDatabase.driver(getNeo4jURL(), AuthTokens.basic(getNeo4jUser(), getNeo4jPASS()));
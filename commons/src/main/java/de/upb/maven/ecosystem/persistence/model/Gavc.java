@@ -0,0 +1,16 @@
+package de.upb.maven.ecosystem.persistence.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** The coordinates that identify a {@link MvnArtifactNode}. */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class Gavc {
+  private String group;
+  private String artifact;
+  private String version;
+  private String classifier;
+}
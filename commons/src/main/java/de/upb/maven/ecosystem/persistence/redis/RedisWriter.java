@@ -21,7 +21,7 @@ public class RedisWriter {
     LOGGER.info("Initialized Redis Connection: " + host);
   }
 
-  public static RedisWriter getInstance() {
+  public static synchronized RedisWriter getInstance() {
 
     if (instance == null) {
       instance = new RedisWriter(RedisSerializerUtil.getRedisURLFromEnvironment());
@@ -0,0 +1,20 @@
+package de.upb.maven.ecosystem.transport;
+
+/**
+ * Priority lanes of the work queue. Each lane has its own queue, the workers prefer the fresh lane
+ * as configured by {@link LaneScheduler#getFreshLaneWeight()}.
+ */
+public enum Lane {
+  /** artifacts that were released recently, e.g., since the last index update */
+  FRESH,
+  /** the historical artifacts of the initial scan */
+  BACKFILL;
+
+  /** @return the queue of the lane, the backfill lane keeps the name of the former single queue */
+  public String queueName(String baseQueueName) {
+    if (this == BACKFILL) {
+      return baseQueueName;
+    }
+    return baseQueueName + "." + name().toLowerCase();
+  }
+}
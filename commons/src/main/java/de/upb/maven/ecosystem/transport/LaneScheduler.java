@@ -0,0 +1,45 @@
+package de.upb.maven.ecosystem.transport;
+
+import java.util.function.IntPredicate;
+
+/**
+ * Picks the lane to take the next message from by deficit round robin. While both lanes have
+ * messages, a worker takes {@link #getFreshLaneWeight()} fresh messages per backfill message. An
+ * empty lane passes its turn, thus, no worker idles while any lane has messages. Not thread-safe.
+ */
+public class LaneScheduler {
+  private final int[] weights;
+  private int lane = 0;
+  private int credit;
+
+  public LaneScheduler(int freshWeight) {
+    this.weights = new int[Lane.values().length];
+    this.weights[Lane.FRESH.ordinal()] = Math.max(1, freshWeight);
+    this.weights[Lane.BACKFILL.ordinal()] = 1;
+    this.credit = weights[lane];
+  }
+
+  public static int getFreshLaneWeight() {
+    String res = System.getenv("FRESH_LANE_WEIGHT");
+    if (res == null || res.isEmpty()) {
+      return 8;
+    }
+    return Integer.parseInt(res);
+  }
+
+  /**
+   * @param hasMessages tells whether the lane with the given ordinal has a message
+   * @return the ordinal of the lane to take the next message from, or -1 if all lanes are empty
+   */
+  public int next(IntPredicate hasMessages) {
+    for (int i = 0; i <= weights.length; i++) {
+      if (credit > 0 && hasMessages.test(lane)) {
+        credit--;
+        return lane;
+      }
+      lane = (lane + 1) % weights.length;
+      credit = weights[lane];
+    }
+    return -1;
+  }
+}
@@ -0,0 +1,124 @@
+package de.upb.maven.ecosystem.transport;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * A message exchanged between producer and workers. It either wraps a payload object, which is only
+ * serialized if the transport leaves the JVM, or the serialized body received from a broker.
+ */
+public final class Message {
+  private static final ObjectMapper mapper = new ObjectMapper();
+
+  static {
+    mapper.setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY);
+  }
+
+  private final String type;
+  private final Object payload;
+  private final int shard;
+  private final Lane lane;
+  // number of retries after failures
+  private final int attempt;
+  private volatile byte[] body;
+
+  private Message(String type, Object payload, byte[] body, int shard, Lane lane, int attempt) {
+    this.type = type;
+    this.payload = payload;
+    this.body = body;
+    this.shard = shard;
+    this.lane = lane;
+    this.attempt = attempt;
+  }
+
+  /**
+   * @param type the message type, null for a single artifact
+   * @param payload the object to send
+   */
+  public static Message of(String type, Object payload) {
+    return of(type, payload, 0);
+  }
+
+  /**
+   * @param type the message type, null for a single artifact
+   * @param payload the object to send
+   * @param shard the shard queue to send the message to
+   */
+  public static Message of(String type, Object payload, int shard) {
+    return of(type, payload, shard, Lane.BACKFILL);
+  }
+
+  /**
+   * @param type the message type, null for a single artifact
+   * @param payload the object to send
+   * @param shard the shard queue to send the message to
+   * @param lane the priority lane to send the message to
+   */
+  public static Message of(String type, Object payload, int shard, Lane lane) {
+    return new Message(type, payload, null, shard, lane, 0);
+  }
+
+  /**
+   * @param type the message type, null for a single artifact
+   * @param body the serialized payload
+   */
+  public static Message ofBody(String type, byte[] body) {
+    return ofBody(type, body, 0, Lane.BACKFILL);
+  }
+
+  /**
+   * @param type the message type, null for a single artifact
+   * @param body the serialized payload
+   * @param shard the shard queue the message was received from
+   * @param lane the priority lane the message was received from
+   */
+  public static Message ofBody(String type, byte[] body, int shard, Lane lane) {
+    return new Message(type, null, body, shard, lane, 0);
+  }
+
+  /** @return a copy of the message with the given number of retries */
+  public Message withAttempt(int attempt) {
+    return new Message(type, payload, body, shard, lane, attempt);
+  }
+
+  public String getType() {
+    return type;
+  }
+
+  /** @return the shard queue of the message, 0 if the queue is not sharded */
+  public int getShard() {
+    return shard;
+  }
+
+  public Lane getLane() {
+    return lane;
+  }
+
+  /** @return the number of retries of the message, 0 on the first delivery */
+  public int getAttempt() {
+    return attempt;
+  }
+
+  /** @return the serialized payload, serializes the payload object on first access */
+  public byte[] getBody() {
+    if (body == null) {
+      try {
+        body = mapper.writeValueAsBytes(payload);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+    return body;
+  }
+
+  /** @return the payload object, deserializes the body if the message came from a broker */
+  public <T> T getPayload(Class<T> clazz) throws IOException {
+    if (clazz.isInstance(payload)) {
+      return clazz.cast(payload);
+    }
+    return mapper.readValue(getBody(), clazz);
+  }
+}
@@ -0,0 +1,12 @@
+package de.upb.maven.ecosystem.transport;
+
+/** Processes the messages consumed by a worker. */
+@FunctionalInterface
+public interface MessageHandler {
+
+  /**
+   * @param message the consumed message
+   * @return the reply to the producer or null to send no reply
+   */
+  Message handle(Message message) throws Exception;
+}
@@ -0,0 +1,8 @@
+package de.upb.maven.ecosystem.transport;
+
+/** Receives the replies of the workers on the producer. */
+@FunctionalInterface
+public interface ReplyHandler {
+
+  void onReply(Message reply);
+}
@@ -0,0 +1,75 @@
+package de.upb.maven.ecosystem.transport;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Moves the messages of a single work queue from the producer to the workers. Implementations are
+ * the RabbitMQ broker, to distribute the work across machines, and a bounded in-JVM queue, to run
+ * producer and workers in a single process.
+ */
+public interface Transport extends AutoCloseable {
+
+  /**
+   * Prepares publishing to the queue.
+   *
+   * @param replyHandler receives the replies of the workers
+   */
+  void startProducer(ReplyHandler replyHandler) throws IOException;
+
+  /** Publishes the message, blocks while the workers are behind. */
+  void publish(Message message) throws IOException, InterruptedException;
+
+  /**
+   * Blocks until all published messages are handed over, i.e., confirmed by the broker or processed
+   * by the in-process workers.
+   *
+   * @return false if the timeout elapsed before
+   */
+  boolean awaitDelivered(long timeoutMs) throws InterruptedException;
+
+  /**
+   * Starts consuming the queue. Returns immediately, the messages are processed on the executor.
+   *
+   * @param handler processes the messages
+   * @param executor runs the handler
+   * @param concurrency number of messages that are processed at the same time
+   */
+  void consume(MessageHandler handler, ExecutorService executor, int concurrency)
+      throws IOException;
+
+  /**
+   * Stops consuming and waits until the messages in progress are processed. Messages that were
+   * received but not yet started go back to the broker.
+   *
+   * @return false if the timeout elapsed before
+   */
+  boolean drain(long timeoutMs) throws InterruptedException;
+
+  /**
+   * Publishes the message to its queue again once the delay elapsed. Returns once the message is
+   * safely stored, thus, the failed message may be acked afterwards.
+   *
+   * @param message the message to retry, with the incremented attempt
+   */
+  void retry(Message message, long delayMs) throws IOException, InterruptedException;
+
+  /**
+   * Parks the message in the dead-letter queue, from which {@link #replayDeadLetters(int)} takes
+   * it.
+   *
+   * @param reason the failure, kept with the message
+   */
+  void deadLetter(Message message, String reason) throws IOException, InterruptedException;
+
+  /**
+   * Moves the dead letters back to their queues, with the retries reset.
+   *
+   * @param limit maximal number of messages to replay
+   * @return the number of replayed messages
+   */
+  int replayDeadLetters(int limit) throws IOException, InterruptedException;
+
+  @Override
+  void close() throws IOException;
+}
@@ -0,0 +1,133 @@
+package de.upb.maven.ecosystem.transport.inprocess;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded lock-free multi-producer multi-consumer queue (Dmitry Vyukov's array queue). Every slot
+ * has a sequence number that tells producers and consumers whether the slot is free or filled in
+ * the current lap, thus, both sides only contend on a single CAS of their position counter.
+ */
+final class BoundedMpmcQueue<E> {
+  private static final int SPINS = 64;
+  private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  private final int mask;
+  private final AtomicReferenceArray<E> buffer;
+  private final AtomicLongArray sequences;
+  private final AtomicLong enqueuePos = new AtomicLong();
+  private final AtomicLong dequeuePos = new AtomicLong();
+
+  /** @param capacity is rounded up to the next power of two */
+  BoundedMpmcQueue(int capacity) {
+    int size = 2;
+    while (size < capacity) {
+      size <<= 1;
+    }
+    this.mask = size - 1;
+    this.buffer = new AtomicReferenceArray<>(size);
+    this.sequences = new AtomicLongArray(size);
+    for (int i = 0; i < size; i++) {
+      sequences.set(i, i);
+    }
+  }
+
+  int capacity() {
+    return mask + 1;
+  }
+
+  /** @return false if the queue is full */
+  boolean offer(E e) {
+    long pos = enqueuePos.get();
+    while (true) {
+      final int index = (int) (pos & mask);
+      final long diff = sequences.get(index) - pos;
+      if (diff == 0) {
+        if (enqueuePos.compareAndSet(pos, pos + 1)) {
+          buffer.lazySet(index, e);
+          // publishes the element to the consumer of this lap
+          sequences.set(index, pos + 1);
+          return true;
+        }
+        pos = enqueuePos.get();
+      } else if (diff < 0) {
+        // the slot still holds the element of the previous lap
+        return false;
+      } else {
+        pos = enqueuePos.get();
+      }
+    }
+  }
+
+  /** @return null if the queue is empty */
+  E poll() {
+    long pos = dequeuePos.get();
+    while (true) {
+      final int index = (int) (pos & mask);
+      final long diff = sequences.get(index) - (pos + 1);
+      if (diff == 0) {
+        if (dequeuePos.compareAndSet(pos, pos + 1)) {
+          final E e = buffer.get(index);
+          buffer.lazySet(index, null);
+          // frees the slot for the producer of the next lap
+          sequences.set(index, pos + mask + 1);
+          return e;
+        }
+        pos = dequeuePos.get();
+      } else if (diff < 0) {
+        return null;
+      } else {
+        pos = dequeuePos.get();
+      }
+    }
+  }
+
+  boolean isEmpty() {
+    return dequeuePos.get() >= enqueuePos.get();
+  }
+
+  /** Blocks until there is room for the element. */
+  void put(E e) throws InterruptedException {
+    int idle = 0;
+    while (!offer(e)) {
+      idle = backoff(idle);
+    }
+  }
+
+  /** @return the head of the queue or null if the timeout elapsed before */
+  E poll(long timeout, TimeUnit unit) throws InterruptedException {
+    final long deadline = System.nanoTime() + unit.toNanos(timeout);
+    int idle = 0;
+    E e;
+    while ((e = poll()) == null) {
+      if (System.nanoTime() - deadline >= 0) {
+        return null;
+      }
+      idle = backoff(idle);
+    }
+    return e;
+  }
+
+  /** @return if {@link #backoff(int)} parks for the longest period, i.e., the queue stays empty */
+  static boolean isBackedOff(int idle) {
+    return idle >= 2 * SPINS && 1000L << Math.min(10, idle - 2 * SPINS) >= MAX_PARK_NANOS;
+  }
+
+  /** Spins first, then yields, then parks for increasing periods of up to a millisecond. */
+  static int backoff(int idle) throws InterruptedException {
+    if (Thread.interrupted()) {
+      throw new InterruptedException();
+    }
+    if (idle < SPINS) {
+      // busy spin
+    } else if (idle < 2 * SPINS) {
+      Thread.yield();
+    } else {
+      LockSupport.parkNanos(Math.min(MAX_PARK_NANOS, 1000L << Math.min(10, idle - 2 * SPINS)));
+    }
+    return idle + 1;
+  }
+}
@@ -0,0 +1,223 @@
+package de.upb.maven.ecosystem.transport.inprocess;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import de.upb.maven.ecosystem.transport.Lane;
+import de.upb.maven.ecosystem.transport.LaneScheduler;
+import de.upb.maven.ecosystem.transport.Message;
+import de.upb.maven.ecosystem.transport.MessageHandler;
+import de.upb.maven.ecosystem.transport.ReplyHandler;
+import de.upb.maven.ecosystem.transport.Transport;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hands the messages from the producer to the workers of the same JVM. There is neither a broker
+ * hop nor serialization, the payload objects are passed as they are. The bounded queue applies the
+ * back pressure: publishing blocks while it is full. Every {@link Lane} has its own queue, the
+ * workers take from them in weighted-fair order. Retries wait on a timer, dead letters are kept in
+ * memory until they are replayed. Consumers whose queues stay empty stop polling and block until a
+ * message is published.
+ */
+public class InProcessTransport implements Transport {
+  private static final Logger logger = LoggerFactory.getLogger(InProcessTransport.class);
+  // an idle consumer re-checks the drain and close flags at least this often
+  private static final long IDLE_WAIT_MS = 1000;
+
+  // a queue per lane, indexed by the ordinal of the lane
+  private final List<BoundedMpmcQueue<Message>> queues = new ArrayList<>();
+  // published, but not yet processed messages
+  private final AtomicLong pending = new AtomicLong();
+  // the blocked consumers, signalled by publishing
+  private final ReentrantLock idleLock = new ReentrantLock();
+  private final Condition published = idleLock.newCondition();
+  private final AtomicInteger idleConsumers = new AtomicInteger();
+  private volatile ReplyHandler replyHandler;
+  private volatile boolean closed = false;
+  private volatile boolean draining = false;
+  private final Queue<Message> deadLetters = new ConcurrentLinkedQueue<>();
+  private final ScheduledExecutorService retryTimer =
+      Executors.newSingleThreadScheduledExecutor(
+          new ThreadFactoryBuilder().setNameFormat("in-process-retry-%d").setDaemon(true).build());
+
+  /** @param capacity number of messages that may wait for a worker, per lane */
+  public InProcessTransport(int capacity) {
+    for (int i = 0; i < Lane.values().length; i++) {
+      queues.add(new BoundedMpmcQueue<>(capacity));
+    }
+    logger.info("In-process queue capacity: {}", queues.get(0).capacity());
+  }
+
+  @Override
+  public void startProducer(ReplyHandler replyHandler) {
+    this.replyHandler = replyHandler;
+  }
+
+  @Override
+  public void publish(Message message) throws InterruptedException {
+    pending.incrementAndGet();
+    queues.get(message.getLane().ordinal()).put(message);
+    signalPublished();
+  }
+
+  private void signalPublished() {
+    // a consumer registers before it re-checks the queues, thus, it sees the message or is
+    // signalled
+    if (idleConsumers.get() > 0) {
+      idleLock.lock();
+      try {
+        published.signal();
+      } finally {
+        idleLock.unlock();
+      }
+    }
+  }
+
+  private void signalAllConsumers() {
+    idleLock.lock();
+    try {
+      published.signalAll();
+    } finally {
+      idleLock.unlock();
+    }
+  }
+
+  /** Blocks the consumer until a message is published, or at most {@link #IDLE_WAIT_MS}. */
+  private void awaitPublished() throws InterruptedException {
+    idleLock.lock();
+    try {
+      idleConsumers.incrementAndGet();
+      try {
+        if (!closed
+            && !(draining && pending.get() == 0)
+            && queues.stream().allMatch(BoundedMpmcQueue::isEmpty)) {
+          published.await(IDLE_WAIT_MS, TimeUnit.MILLISECONDS);
+        }
+      } finally {
+        idleConsumers.decrementAndGet();
+      }
+    } finally {
+      idleLock.unlock();
+    }
+  }
+
+  @Override
+  public boolean awaitDelivered(long timeoutMs) throws InterruptedException {
+    final long deadline = System.currentTimeMillis() + timeoutMs;
+    while (pending.get() > 0) {
+      if (System.currentTimeMillis() >= deadline) {
+        return false;
+      }
+      Thread.sleep(10);
+    }
+    return true;
+  }
+
+  @Override
+  public void consume(MessageHandler handler, ExecutorService executor, int concurrency) {
+    for (int i = 0; i < concurrency; i++) {
+      executor.execute(() -> consumeLoop(handler));
+    }
+  }
+
+  private void consumeLoop(MessageHandler handler) {
+    // every consumer thread runs its own round robin
+    final LaneScheduler scheduler = new LaneScheduler(LaneScheduler.getFreshLaneWeight());
+    int idle = 0;
+    try {
+      // there is no broker to return the messages to, thus, a draining worker empties the queues
+      while (!closed && !(draining && pending.get() == 0)) {
+        final int lane = scheduler.next(l -> !queues.get(l).isEmpty());
+        final Message message = lane < 0 ? null : queues.get(lane).poll();
+        if (message == null) {
+          if (BoundedMpmcQueue.isBackedOff(idle)) {
+            // do not wake up every millisecond, e.g., between the runs of the producer
+            awaitPublished();
+          } else {
+            idle = BoundedMpmcQueue.backoff(idle);
+          }
+          continue;
+        }
+        idle = 0;
+        try {
+          final Message reply = handler.handle(message);
+          final ReplyHandler replies = replyHandler;
+          if (reply != null && replies != null) {
+            replies.onReply(reply);
+          }
+        } catch (Exception e) {
+          logger.error("[Worker] job failed...", e);
+        } finally {
+          if (pending.decrementAndGet() == 0 && draining) {
+            // the blocked consumers stop, too
+            signalAllConsumers();
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /** Waits until the queued messages are processed, the producer must have stopped publishing. */
+  @Override
+  public boolean drain(long timeoutMs) throws InterruptedException {
+    draining = true;
+    signalAllConsumers();
+    return awaitDelivered(timeoutMs);
+  }
+
+  @Override
+  public void retry(Message message, long delayMs) {
+    // the retry is pending, too, awaitDelivered waits for it
+    pending.incrementAndGet();
+    retryTimer.schedule(
+        () -> {
+          try {
+            queues.get(message.getLane().ordinal()).put(message);
+            signalPublished();
+          } catch (InterruptedException e) {
+            pending.decrementAndGet();
+            Thread.currentThread().interrupt();
+          }
+        },
+        delayMs,
+        TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public void deadLetter(Message message, String reason) {
+    logger.warn("[Worker] Dead letter after {} retries: {}", message.getAttempt(), reason);
+    deadLetters.add(message);
+  }
+
+  @Override
+  public int replayDeadLetters(int limit) throws InterruptedException {
+    int replayed = 0;
+    Message message;
+    while (replayed < limit && (message = deadLetters.poll()) != null) {
+      publish(message.withAttempt(0));
+      replayed++;
+    }
+    return replayed;
+  }
+
+  @Override
+  public void close() throws IOException {
+    closed = true;
+    signalAllConsumers();
+    retryTimer.shutdownNow();
+  }
+}
@@ -0,0 +1,144 @@
+package de.upb.maven.ecosystem.transport.rabbitmq;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.ConnectionFactory;
+import com.rabbitmq.client.Recoverable;
+import com.rabbitmq.client.RecoveryListener;
+import com.rabbitmq.client.ShutdownNotifier;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The connection to the broker and its channels, one per purpose. The client recovers the
+ * connection automatically after a network failure or a broker restart, including the channels,
+ * their confirm mode and prefetch, the queues and the consumers. Thus, a worker keeps running with
+ * its warm caches, instead of exiting and cold-starting.
+ */
+class ChannelPool implements AutoCloseable {
+  private static final Logger logger = LoggerFactory.getLogger(ChannelPool.class);
+
+  private final String rabbitmqHost;
+  private final String rabbitmqUser;
+  private final String rabbitmqPass;
+  private final Map<String, Channel> channels = new LinkedHashMap<>();
+  private Connection connection;
+  private volatile long lostAt = 0;
+
+  ChannelPool(String rabbitmqHost, String rabbitmqUser, String rabbitmqPass) {
+    this.rabbitmqHost = rabbitmqHost;
+    this.rabbitmqUser = rabbitmqUser;
+    this.rabbitmqPass = rabbitmqPass;
+  }
+
+  public static long getRecoveryIntervalMs() {
+    String res = System.getenv("RABBITMQ_RECOVERY_INTERVAL_MS");
+    if (res == null || res.isEmpty()) {
+      return 5000;
+    }
+    return Long.parseLong(res);
+  }
+
+  private boolean reachable() {
+    try (Socket ignored = new Socket(rabbitmqHost, 5672)) {
+      return true;
+    } catch (IOException ignored) {
+      return false;
+    }
+  }
+
+  /**
+   * The channel for the purpose, opened on first use. A channel is shared by all users of the same
+   * purpose, they synchronize on it themselves.
+   */
+  synchronized Channel channel(String purpose) throws IOException {
+    Channel channel = channels.get(purpose);
+    if (channel == null) {
+      channel = getConnection().createChannel();
+      logShutdown(channel, "Channel " + purpose);
+      channels.put(purpose, channel);
+    }
+    return channel;
+  }
+
+  private Connection getConnection() throws IOException {
+    if (connection != null) {
+      return connection;
+    }
+    logger.info("Check if rabbitmq is up and running");
+    try {
+      // automatic recovery only applies to established connections
+      while (!reachable()) {
+        logger.info("rabbitmq is not available waiting for {} sec", 30);
+        Thread.sleep(1000 * 30);
+      }
+      ConnectionFactory factory = new ConnectionFactory();
+      factory.setHost(rabbitmqHost);
+      factory.setUsername(rabbitmqUser);
+      factory.setPassword(rabbitmqPass);
+      factory.setAutomaticRecoveryEnabled(true);
+      factory.setTopologyRecoveryEnabled(true);
+      factory.setNetworkRecoveryInterval(getRecoveryIntervalMs());
+      logger.info("RABBITMQ_RECOVERY_INTERVAL_MS: {}", factory.getNetworkRecoveryInterval());
+      connection = factory.newConnection();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting for rabbitmq", e);
+    } catch (TimeoutException e) {
+      throw new IOException(e);
+    }
+    logShutdown(connection, "Connection");
+    onRecovery(
+        connection,
+        () ->
+            logger.info(
+                "Recovered connection to rabbitmq after {} ms",
+                System.currentTimeMillis() - lostAt));
+    return connection;
+  }
+
+  private void logShutdown(ShutdownNotifier notifier, String kind) {
+    notifier.addShutdownListener(
+        cause -> {
+          if (cause.isInitiatedByApplication()) {
+            return;
+          }
+          if (notifier == connection) {
+            lostAt = System.currentTimeMillis();
+          }
+          logger.warn(
+              "Received {} Shutdown signal with cause: {}, recovering", kind, cause.getMessage());
+        });
+  }
+
+  /** Runs the action once the connection or channel has been recovered. */
+  static void onRecovery(Object recoverable, Runnable action) {
+    if (!(recoverable instanceof Recoverable)) {
+      return;
+    }
+    ((Recoverable) recoverable)
+        .addRecoveryListener(
+            new RecoveryListener() {
+              @Override
+              public void handleRecovery(Recoverable recovered) {
+                action.run();
+              }
+
+              @Override
+              public void handleRecoveryStarted(Recoverable recovering) {}
+            });
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    if (connection != null) {
+      // closes the channels, too
+      connection.close();
+    }
+  }
+}
@@ -0,0 +1,323 @@
+package de.upb.maven.ecosystem.transport.rabbitmq;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ShutdownSignalException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Flow control of the producer. Messages are published with asynchronous publisher confirms, and
+ * the depth of the work queues is sampled periodically. {@link #publish(int, AMQP.BasicProperties,
+ * byte[])} blocks while the target queue already holds {@link #getQueueTargetDepth()} ready
+ * messages per consumer, or while {@link #getMaxUnconfirmed()} messages are not yet confirmed by
+ * the broker. As the target depth scales with the consumer count, adding workers raises the
+ * throughput. Messages that are unconfirmed when the channel is lost are published again once it
+ * has been recovered.
+ */
+public class PublisherFlowControl implements AutoCloseable {
+  private static final Logger logger = LoggerFactory.getLogger(PublisherFlowControl.class);
+
+  private final Channel channel;
+  private final Channel sampleChannel;
+  private final List<String> queueNames;
+  private final int targetDepthPerConsumer;
+  private final int maxUnconfirmed;
+  private final long sampleIntervalMs;
+  private final ScheduledExecutorService sampler;
+
+  /** Published but not yet confirmed messages by their sequence number, to republish on nack. */
+  private final ConcurrentNavigableMap<Long, Pending> unconfirmed = new ConcurrentSkipListMap<>();
+
+  /**
+   * Messages that could not be published, as the channel was lost, to publish on recovery, and
+   * messages rejected by the broker, to publish by the sampler.
+   */
+  private final Queue<Pending> unpublished = new ConcurrentLinkedQueue<>();
+
+  private final Object lock = new Object();
+  // per queue, indexed like queueNames
+  private final long[] sampledDepth;
+  private final int[] sampledConsumers;
+  // estimate of the messages that reached the queue after the last sample
+  private final long[] publishedSinceSample;
+
+  /**
+   * @param channel the channel to publish on, is switched to confirm mode
+   * @param queueNames the queues to publish to and to sample the depth of
+   * @param targetDepthPerConsumer number of ready messages kept in the queue per consumer
+   * @param maxUnconfirmed maximal number of published but unconfirmed messages
+   * @param sampleIntervalMs interval between two queue depth samples
+   */
+  public PublisherFlowControl(
+      Channel channel,
+      List<String> queueNames,
+      int targetDepthPerConsumer,
+      int maxUnconfirmed,
+      long sampleIntervalMs)
+      throws IOException {
+    this.channel = channel;
+    this.queueNames = queueNames;
+    this.sampledDepth = new long[queueNames.size()];
+    this.sampledConsumers = new int[queueNames.size()];
+    this.publishedSinceSample = new long[queueNames.size()];
+    this.targetDepthPerConsumer = Math.max(1, targetDepthPerConsumer);
+    this.maxUnconfirmed = Math.max(1, maxUnconfirmed);
+    this.sampleIntervalMs = Math.max(1, sampleIntervalMs);
+
+    channel.confirmSelect();
+    channel.addConfirmListener(this::handleAck, this::handleNack);
+    // the broker will not confirm the messages of the lost channel
+    ChannelPool.onRecovery(channel, this::republish);
+    // a separate channel, so that sampling does not interleave with publishing
+    this.sampleChannel = channel.getConnection().createChannel();
+    sample();
+    this.sampler =
+        Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder()
+                .setNameFormat("queue-depth-sampler-%d")
+                .setDaemon(true)
+                .build());
+    this.sampler.scheduleWithFixedDelay(
+        this::sample, this.sampleIntervalMs, this.sampleIntervalMs, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Ready messages the producer keeps in the queue per consumer. Falls back to the former
+   * ACTOR_LIMIT variable.
+   */
+  public static int getQueueTargetDepth() {
+    String res = System.getenv("QUEUE_TARGET_DEPTH");
+    if (res == null || res.isEmpty()) {
+      res = System.getenv("ACTOR_LIMIT");
+    }
+    if (res == null || res.isEmpty()) {
+      return 20;
+    }
+    return Integer.parseInt(res);
+  }
+
+  public static int getMaxUnconfirmed() {
+    String res = System.getenv("MAX_UNCONFIRMED");
+    if (res == null || res.isEmpty()) {
+      return 1000;
+    }
+    return Integer.parseInt(res);
+  }
+
+  public static long getSampleIntervalMs() {
+    String res = System.getenv("QUEUE_SAMPLE_INTERVAL_MS");
+    if (res == null || res.isEmpty()) {
+      return 1000;
+    }
+    return Long.parseLong(res);
+  }
+
+  /**
+   * Publishes the body to a queue, blocks until the queue has room for it.
+   *
+   * @param queue index of the queue in the queue names
+   */
+  public void publish(int queue, AMQP.BasicProperties props, byte[] body)
+      throws IOException, InterruptedException {
+    synchronized (lock) {
+      while (unconfirmed.size() + unpublished.size() >= maxUnconfirmed
+          || sampledDepth[queue] + publishedSinceSample[queue] >= getTargetDepth(queue)) {
+        // woken up by new samples and confirms, the timeout guards against a stuck sampler
+        lock.wait(sampleIntervalMs);
+      }
+      publishedSinceSample[queue]++;
+    }
+    basicPublish(new Pending(queue, props, body));
+  }
+
+  private void basicPublish(Pending pending) throws IOException {
+    // publish may be called from several threads, the sequence number must match the publish
+    synchronized (channel) {
+      final long seqNo = channel.getNextPublishSeqNo();
+      unconfirmed.put(seqNo, pending);
+      try {
+        channel.basicPublish("", queueNames.get(pending.queue), pending.props, pending.body);
+      } catch (ShutdownSignalException e) {
+        unconfirmed.remove(seqNo);
+        unpublished.add(pending);
+        logger.debug("[Producer] Channel lost, publishing on recovery");
+      }
+    }
+  }
+
+  /** Publishes the unconfirmed and unpublished messages on the recovered channel. */
+  private void republish() {
+    synchronized (channel) {
+      final List<Pending> lost = new ArrayList<>(unconfirmed.values());
+      unconfirmed.clear();
+      Pending pending;
+      while ((pending = unpublished.poll()) != null) {
+        lost.add(pending);
+      }
+      logger.warn("[Producer] Recovered channel, republishing {} messages", lost.size());
+      for (Pending message : lost) {
+        try {
+          basicPublish(message);
+        } catch (IOException e) {
+          logger.error("[Producer] Failed to republish message", e);
+        }
+      }
+    }
+  }
+
+  private long getTargetDepth(int queue) {
+    // without any consumer, still fill the queue for the first worker that joins
+    return (long) targetDepthPerConsumer * Math.max(1, sampledConsumers[queue]);
+  }
+
+  private void sample() {
+    try {
+      final AMQP.Queue.DeclareOk[] oks = new AMQP.Queue.DeclareOk[queueNames.size()];
+      synchronized (sampleChannel) {
+        for (int i = 0; i < oks.length; i++) {
+          oks[i] = sampleChannel.queueDeclarePassive(queueNames.get(i));
+        }
+      }
+      // unconfirmed messages may not be part of the sampled depth yet
+      final long[] unconfirmedPerQueue = new long[oks.length];
+      for (Pending pending : unconfirmed.values()) {
+        unconfirmedPerQueue[pending.queue]++;
+      }
+      long depth = 0;
+      synchronized (lock) {
+        for (int i = 0; i < oks.length; i++) {
+          sampledDepth[i] = oks[i].getMessageCount();
+          sampledConsumers[i] = oks[i].getConsumerCount();
+          publishedSinceSample[i] = unconfirmedPerQueue[i];
+          depth += sampledDepth[i];
+        }
+        lock.notifyAll();
+      }
+      logger.debug(
+          "[Producer] Depth of {} queues: {}, unconfirmed: {}",
+          oks.length,
+          depth,
+          unconfirmed.size());
+    } catch (IOException | ShutdownSignalException e) {
+      // keeps the last sample until the channel is recovered
+      logger.warn("[Producer] Failed to sample queue depth", e);
+    }
+  }
+
+  private void handleAck(long deliveryTag, boolean multiple) {
+    remove(deliveryTag, multiple);
+    synchronized (lock) {
+      lock.notifyAll();
+    }
+  }
+
+  /**
+   * The broker could not take the messages, publish them again. Confirms are delivered on the
+   * connection thread, which must not publish, thus, the sampler publishes them.
+   */
+  private void handleNack(long deliveryTag, boolean multiple) {
+    final List<Pending> nacked = remove(deliveryTag, multiple);
+    logger.warn("[Producer] Broker rejected {} messages, republishing", nacked.size());
+    unpublished.addAll(nacked);
+    synchronized (lock) {
+      lock.notifyAll();
+    }
+    try {
+      sampler.execute(this::publishUnpublished);
+    } catch (RejectedExecutionException e) {
+      logger.warn("[Producer] Closed, dropping {} rejected messages", nacked.size());
+    }
+  }
+
+  /** Publishes the rejected messages, the messages of a lost channel wait for its recovery. */
+  private void publishUnpublished() {
+    synchronized (channel) {
+      if (!channel.isOpen()) {
+        return;
+      }
+      // messages that fail again are added back, publish each at most once
+      for (int i = unpublished.size(); i > 0; i--) {
+        final Pending pending = unpublished.poll();
+        if (pending == null) {
+          break;
+        }
+        try {
+          basicPublish(pending);
+        } catch (IOException e) {
+          logger.error("[Producer] Failed to republish message", e);
+        }
+      }
+    }
+  }
+
+  private List<Pending> remove(long deliveryTag, boolean multiple) {
+    final List<Pending> removed = new ArrayList<>();
+    if (multiple) {
+      final Map<Long, Pending> confirmed = unconfirmed.headMap(deliveryTag, true);
+      removed.addAll(confirmed.values());
+      confirmed.clear();
+    } else {
+      final Pending pending = unconfirmed.remove(deliveryTag);
+      if (pending != null) {
+        removed.add(pending);
+      }
+    }
+    return removed;
+  }
+
+  /**
+   * Blocks until all published messages are confirmed by the broker.
+   *
+   * @return false if the timeout elapsed before
+   */
+  public boolean awaitConfirms(long timeoutMs) throws InterruptedException {
+    final long deadline = System.currentTimeMillis() + timeoutMs;
+    synchronized (lock) {
+      while (!unconfirmed.isEmpty() || !unpublished.isEmpty()) {
+        final long remaining = deadline - System.currentTimeMillis();
+        if (remaining <= 0) {
+          return false;
+        }
+        lock.wait(Math.min(remaining, sampleIntervalMs));
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public void close() throws IOException {
+    sampler.shutdownNow();
+    try {
+      sampleChannel.close();
+    } catch (TimeoutException e) {
+      throw new IOException(e);
+    }
+  }
+
+  private static class Pending {
+    private final int queue;
+    private final AMQP.BasicProperties props;
+    private final byte[] body;
+
+    Pending(int queue, AMQP.BasicProperties props, byte[] body) {
+      this.queue = queue;
+      this.props = props;
+      this.body = body;
+    }
+  }
+}
@@ -0,0 +1,528 @@
+package de.upb.maven.ecosystem.transport.rabbitmq;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.BuiltinExchangeType;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.DefaultConsumer;
+import com.rabbitmq.client.DeliverCallback;
+import com.rabbitmq.client.Delivery;
+import com.rabbitmq.client.Envelope;
+import com.rabbitmq.client.GetResponse;
+import com.rabbitmq.client.ShutdownSignalException;
+import de.upb.maven.ecosystem.ShardRouting;
+import de.upb.maven.ecosystem.transport.Lane;
+import de.upb.maven.ecosystem.transport.LaneScheduler;
+import de.upb.maven.ecosystem.transport.Message;
+import de.upb.maven.ecosystem.transport.MessageHandler;
+import de.upb.maven.ecosystem.transport.ReplyHandler;
+import de.upb.maven.ecosystem.transport.Transport;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Distributes the messages across machines with a RabbitMQ broker. Every {@link Lane} has its own
+ * queue, and a worker consumes every lane on a separate channel, so that a full backfill prefetch
+ * never holds back fresh messages. With more than one shard, the messages are published to the
+ * shard queue named in the message, and the shard queues are split among the live workers by {@link
+ * ShardMembership}. The connection recovers from broker restarts, see {@link ChannelPool}.
+ *
+ * <p>A retry waits in a delay queue &lt;queue&gt;.retry.&lt;delay&gt; whose messages expire after
+ * the delay and are dead-lettered back to the work queue they came from. Failed messages that are
+ * not retried go to the dead-letter queue &lt;queue&gt;.dead.
+ */
+public class RabbitMQTransport implements Transport {
+  private static final Logger logger = LoggerFactory.getLogger(RabbitMQTransport.class);
+  private static final String ATTEMPT_HEADER = "x-attempt";
+  // the work queue of a dead letter
+  private static final String QUEUE_HEADER = "x-queue";
+  private static final String ERROR_HEADER = "x-error";
+  private static final long CONFIRM_TIMEOUT_MS = 60_000;
+  // dead letters confirmed at once while replaying
+  private static final int REPLAY_CHUNK = 100;
+
+  private final ChannelPool channels;
+  private final String queueName;
+  // the queue of lane l and shard s is at l * shardCount + s
+  private final List<String> queueNames = new ArrayList<>();
+  private final int shardCount;
+  private final String replyQueue;
+  private final int queueTargetDepth;
+  private final int prefetchCount;
+
+  private Channel activeChannel;
+
+  /**
+   * Applies back pressure to the producer. It keeps a fixed amount of ready messages per worker
+   * queued with rabbit and blocks the enqueueing thread until the workers caught up.
+   */
+  private PublisherFlowControl flowControl;
+
+  private ShardMembership membership;
+  private MessageHandler handler;
+  private ExecutorService executor;
+  private LaneDispatcher dispatcher;
+  // a channel per lane, indexed by the ordinal of the lane
+  private Channel[] laneChannels;
+  // per lane, incremented when the channel is lost, deliveries of an older epoch are redelivered
+  private final AtomicLong[] laneEpochs = new AtomicLong[Lane.values().length];
+  // received, but not yet acked deliveries
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private volatile boolean draining = false;
+  // consumer tags per consumed shard, indexed by the ordinal of the lane
+  private final Map<Integer, String[]> shardConsumers = new HashMap<>();
+  // publishes retries and dead letters with confirms, guarded by itself
+  private Channel confirmChannel;
+  private final Set<Long> declaredDelays = new HashSet<>();
+
+  /**
+   * @param queueTargetDepth ready messages the producer keeps queued per worker
+   * @param prefetchCount unacknowledged messages the broker pushes to a worker
+   * @param shardCount number of shard queues, 1 to use the queue without sharding
+   */
+  public RabbitMQTransport(
+      String rabbitmqHost,
+      String rabbitmqUser,
+      String rabbitmqPass,
+      String queueName,
+      String replyQueue,
+      int queueTargetDepth,
+      int prefetchCount,
+      int shardCount) {
+    this.channels = new ChannelPool(rabbitmqHost, rabbitmqUser, rabbitmqPass);
+    this.queueName = queueName;
+    this.shardCount = Math.max(1, shardCount);
+    for (Lane lane : Lane.values()) {
+      for (String shardQueue : ShardRouting.queueNames(queueName, this.shardCount)) {
+        queueNames.add(lane.queueName(shardQueue));
+      }
+    }
+    this.replyQueue = replyQueue;
+    this.queueTargetDepth = queueTargetDepth;
+    this.prefetchCount = prefetchCount;
+    for (int i = 0; i < laneEpochs.length; i++) {
+      laneEpochs[i] = new AtomicLong();
+    }
+  }
+
+  private synchronized Channel getChannel() throws IOException {
+    if (activeChannel != null) {
+      return activeChannel;
+    }
+    Channel channel = channels.channel("main");
+    // the queues are declared again on recovery
+    for (String name : queueNames) {
+      channel.queueDeclare(name, false, false, false, null);
+    }
+    activeChannel = channel;
+    return activeChannel;
+  }
+
+  private String deadLetterQueue() {
+    return queueName + ".dead";
+  }
+
+  private String delayQueue(long delayMs) {
+    return queueName + ".retry." + delayMs;
+  }
+
+  private synchronized Channel getConfirmChannel() throws IOException {
+    if (confirmChannel == null) {
+      Channel channel = channels.channel("retry");
+      channel.confirmSelect();
+      channel.queueDeclare(deadLetterQueue(), false, false, false, null);
+      confirmChannel = channel;
+    }
+    return confirmChannel;
+  }
+
+  /** Received deliveries that are not yet acked. */
+  public int getInFlight() {
+    return inFlight.get();
+  }
+
+  private int queueIndex(Lane lane, int shard) {
+    return lane.ordinal() * shardCount + shard;
+  }
+
+  @Override
+  public void startProducer(ReplyHandler replyHandler) throws IOException {
+    final Channel channel = getChannel();
+    channel.basicConsume(
+        replyQueue,
+        true,
+        new DefaultConsumer(channel) {
+          @Override
+          public void handleDelivery(
+              String consumerTag, Envelope envelope, AMQP.BasicProperties properties, byte[] body) {
+            replyHandler.onReply(Message.ofBody(properties.getType(), body));
+          }
+        });
+    flowControl =
+        new PublisherFlowControl(
+            channel,
+            queueNames,
+            queueTargetDepth,
+            PublisherFlowControl.getMaxUnconfirmed(),
+            PublisherFlowControl.getSampleIntervalMs());
+  }
+
+  @Override
+  public void publish(Message message) throws IOException, InterruptedException {
+    AMQP.BasicProperties props =
+        new AMQP.BasicProperties.Builder().replyTo(replyQueue).type(message.getType()).build();
+    final int queue = queueIndex(message.getLane(), Math.floorMod(message.getShard(), shardCount));
+    flowControl.publish(queue, props, message.getBody());
+  }
+
+  @Override
+  public boolean awaitDelivered(long timeoutMs) throws InterruptedException {
+    return flowControl == null || flowControl.awaitConfirms(timeoutMs);
+  }
+
+  @Override
+  public void consume(MessageHandler handler, ExecutorService executor, int concurrency)
+      throws IOException {
+    final Channel channel = getChannel();
+    this.handler = handler;
+    this.executor = executor;
+    this.dispatcher = new LaneDispatcher(LaneScheduler.getFreshLaneWeight());
+    this.laneChannels = new Channel[Lane.values().length];
+    for (Lane lane : Lane.values()) {
+      final Channel laneChannel = channels.channel("lane-" + lane);
+      final AtomicLong epoch = laneEpochs[lane.ordinal()];
+      laneChannel.addShutdownListener(
+          cause -> {
+            if (!cause.isInitiatedByApplication()) {
+              epoch.incrementAndGet();
+            }
+          });
+      ChannelPool.onRecovery(
+          laneChannel,
+          () ->
+              logger.info(
+                  "[Worker] Recovered {} lane, {} deliveries in flight are redelivered",
+                  lane,
+                  inFlight.get()));
+      // the broker pushes prefetchCount messages per lane, they queue up in the dispatcher.
+      // The prefetch count is shared by the consumers of all shards of the channel
+      laneChannel.basicQos(prefetchCount, true);
+      laneChannels[lane.ordinal()] = laneChannel;
+    }
+    if (shardCount == 1) {
+      consumeShards(Collections.singleton(0));
+      return;
+    }
+    membership =
+        new ShardMembership(
+            channel,
+            queueName + ".members",
+            createMemberId(),
+            shardCount,
+            ShardMembership.getHeartbeatMs(),
+            this::consumeShards);
+    membership.start();
+  }
+
+  private String basicConsume(Lane lane, int shard) throws IOException {
+    final Channel channel = laneChannels[lane.ordinal()];
+    DeliverCallback deliverCallback =
+        (consumerTag, delivery) -> {
+          final long epoch = laneEpochs[lane.ordinal()].get();
+          inFlight.incrementAndGet();
+          dispatcher.add(lane, () -> handleDelivery(lane, shard, epoch, delivery));
+          // the executor runs the message the dispatcher picks, not necessarily this one
+          executor.execute(dispatcher::runNext);
+        };
+    synchronized (channel) {
+      return channel.basicConsume(
+          queueNames.get(queueIndex(lane, shard)), false, deliverCallback, consumerTag -> {});
+    }
+  }
+
+  /**
+   * Consumes the lanes of the assigned shards only, messages of revoked shards in flight are still
+   * acked.
+   */
+  private synchronized void consumeShards(Set<Integer> assigned) {
+    // a reassignment that raced with the drain must not subscribe again
+    final Set<Integer> shards = draining ? Collections.emptySet() : assigned;
+    try {
+      for (Integer shard : new ArrayList<>(shardConsumers.keySet())) {
+        if (!shards.contains(shard)) {
+          final String[] consumerTags = shardConsumers.remove(shard);
+          for (Lane lane : Lane.values()) {
+            final Channel channel = laneChannels[lane.ordinal()];
+            synchronized (channel) {
+              channel.basicCancel(consumerTags[lane.ordinal()]);
+            }
+          }
+        }
+      }
+      for (Integer shard : shards) {
+        if (!shardConsumers.containsKey(shard)) {
+          final String[] consumerTags = new String[Lane.values().length];
+          for (Lane lane : Lane.values()) {
+            consumerTags[lane.ordinal()] = basicConsume(lane, shard);
+          }
+          shardConsumers.put(shard, consumerTags);
+        }
+      }
+    } catch (IOException | ShutdownSignalException e) {
+      // consumers of a lost channel are registered again on recovery
+      logger.error("[Worker] Failed to change the consumed shards", e);
+    }
+  }
+
+  private static String createMemberId() {
+    String host;
+    try {
+      host = InetAddress.getLocalHost().getHostName();
+    } catch (IOException e) {
+      host = "worker";
+    }
+    return host + "-" + UUID.randomUUID();
+  }
+
+  private void handleDelivery(Lane lane, int shard, long epoch, Delivery delivery) {
+    final Channel channel = laneChannels[lane.ordinal()];
+    final AtomicLong currentEpoch = laneEpochs[lane.ordinal()];
+    if (currentEpoch.get() != epoch || draining) {
+      // received before the channel was lost or the worker drains, the broker redelivers it once
+      // the delivery is neither acked nor the channel open
+      inFlight.decrementAndGet();
+      logger.debug("[Worker] Dropped delivery of lost channel or draining worker");
+      return;
+    }
+    Message reply = null;
+    boolean handled = false;
+    try {
+      final AMQP.BasicProperties properties = delivery.getProperties();
+      reply =
+          handler.handle(
+              Message.ofBody(properties.getType(), delivery.getBody(), shard, lane)
+                  .withAttempt(getAttempt(properties)));
+      handled = true;
+    } catch (Exception e) {
+      // e.g., the retry or dead letter of a failed artifact could not be published
+      logger.error("[Worker] job failed, the message is redelivered", e);
+    } finally {
+      // deliveries finish out of order, thus, only ack the single delivery tag (multiple = false).
+      // Channels must not be used concurrently for publishing.
+      synchronized (channel) {
+        try {
+          // the reply only reports results, the flow control of the producer does not depend on it
+          final String replyTo = delivery.getProperties().getReplyTo();
+          if (reply != null && replyTo != null) {
+            AMQP.BasicProperties props =
+                new AMQP.BasicProperties.Builder().type(reply.getType()).build();
+            channel.basicPublish("", replyTo, props, reply.getBody());
+          }
+          if (currentEpoch.get() != epoch) {
+            // the delivery tag is not valid on the recovered channel
+            logger.warn("[Worker] Channel lost while processing, the message is redelivered");
+          } else if (handled) {
+            channel.basicAck(delivery.getEnvelope().getDeliveryTag(), false);
+            logger.info("[Worker] Send Ack");
+          } else {
+            // neither retried nor dead-lettered, thus, must not be acked away
+            channel.basicNack(delivery.getEnvelope().getDeliveryTag(), false, true);
+            logger.info("[Worker] Send Nack");
+          }
+        } catch (IOException | ShutdownSignalException e) {
+          logger.error("[Worker] Failed to send Ack or Nack, the message is redelivered", e);
+        } finally {
+          inFlight.decrementAndGet();
+        }
+      }
+    }
+  }
+
+  private static int getAttempt(AMQP.BasicProperties properties) {
+    if (properties.getHeaders() == null) {
+      return 0;
+    }
+    final Object attempt = properties.getHeaders().get(ATTEMPT_HEADER);
+    return attempt instanceof Number ? ((Number) attempt).intValue() : 0;
+  }
+
+  private String workQueue(Message message) {
+    return queueNames.get(
+        queueIndex(message.getLane(), Math.floorMod(message.getShard(), shardCount)));
+  }
+
+  @Override
+  public boolean drain(long timeoutMs) throws InterruptedException {
+    draining = true;
+    synchronized (this) {
+      if (membership != null) {
+        // the other workers take over the shards right away
+        membership.close();
+        membership = null;
+      }
+      if (laneChannels != null) {
+        consumeShards(Collections.emptySet());
+      }
+    }
+    logger.info("[Worker] Draining {} deliveries in flight", inFlight.get());
+    final long deadline = System.currentTimeMillis() + timeoutMs;
+    while (inFlight.get() > 0) {
+      if (System.currentTimeMillis() >= deadline) {
+        return false;
+      }
+      Thread.sleep(100);
+    }
+    return true;
+  }
+
+  @Override
+  public void retry(Message message, long delayMs) throws IOException, InterruptedException {
+    final Channel channel = getConfirmChannel();
+    final String delayQueue = delayQueue(delayMs);
+    AMQP.BasicProperties props =
+        new AMQP.BasicProperties.Builder()
+            .replyTo(replyQueue)
+            .type(message.getType())
+            .headers(Collections.singletonMap(ATTEMPT_HEADER, message.getAttempt()))
+            .build();
+    synchronized (channel) {
+      if (declaredDelays.add(delayMs)) {
+        Map<String, Object> args = new HashMap<>();
+        args.put("x-message-ttl", delayMs);
+        // expired messages go to the default exchange with their routing key, the work queue
+        args.put("x-dead-letter-exchange", "");
+        channel.queueDeclare(delayQueue, false, false, false, args);
+        // the fanout exchange keeps the routing key of the message
+        channel.exchangeDeclare(delayQueue, BuiltinExchangeType.FANOUT);
+        channel.queueBind(delayQueue, delayQueue, "");
+      }
+      channel.basicPublish(delayQueue, workQueue(message), props, message.getBody());
+      waitForConfirms(channel);
+    }
+  }
+
+  @Override
+  public void deadLetter(Message message, String reason) throws IOException, InterruptedException {
+    final Channel channel = getConfirmChannel();
+    Map<String, Object> headers = new HashMap<>();
+    headers.put(ATTEMPT_HEADER, message.getAttempt());
+    headers.put(QUEUE_HEADER, workQueue(message));
+    headers.put(ERROR_HEADER, String.valueOf(reason));
+    AMQP.BasicProperties props =
+        new AMQP.BasicProperties.Builder()
+            .replyTo(replyQueue)
+            .type(message.getType())
+            .headers(headers)
+            .build();
+    synchronized (channel) {
+      channel.basicPublish("", deadLetterQueue(), props, message.getBody());
+      waitForConfirms(channel);
+    }
+  }
+
+  @Override
+  public int replayDeadLetters(int limit) throws IOException, InterruptedException {
+    getChannel();
+    final Channel channel = getConfirmChannel();
+    int replayed = 0;
+    synchronized (channel) {
+      long lastTag = -1;
+      while (replayed < limit) {
+        final GetResponse response = channel.basicGet(deadLetterQueue(), false);
+        if (response == null) {
+          break;
+        }
+        final AMQP.BasicProperties properties = response.getProps();
+        final Object queue =
+            properties.getHeaders() == null ? null : properties.getHeaders().get(QUEUE_HEADER);
+        // a replayed message starts over with its retries
+        AMQP.BasicProperties props =
+            new AMQP.BasicProperties.Builder()
+                .replyTo(properties.getReplyTo())
+                .type(properties.getType())
+                .build();
+        channel.basicPublish(
+            "", queue == null ? queueName : queue.toString(), props, response.getBody());
+        lastTag = response.getEnvelope().getDeliveryTag();
+        replayed++;
+        if (replayed % REPLAY_CHUNK == 0) {
+          // ack the dead letters only once their copies are safe
+          waitForConfirms(channel);
+          channel.basicAck(lastTag, true);
+          lastTag = -1;
+          logger.info("Replayed {} dead letters", replayed);
+        }
+      }
+      if (lastTag >= 0) {
+        waitForConfirms(channel);
+        channel.basicAck(lastTag, true);
+      }
+    }
+    logger.info("Replayed {} dead letters", replayed);
+    return replayed;
+  }
+
+  private static void waitForConfirms(Channel channel) throws IOException, InterruptedException {
+    try {
+      if (!channel.waitForConfirms(CONFIRM_TIMEOUT_MS)) {
+        throw new IOException("Broker rejected the message");
+      }
+    } catch (TimeoutException e) {
+      throw new IOException("Broker did not confirm in time", e);
+    }
+  }
+
+  /** Buffers the deliveries of all lanes, the workers take them in weighted-fair order. */
+  private static class LaneDispatcher {
+    private final LaneScheduler scheduler;
+    private final List<ArrayDeque<Runnable>> lanes = new ArrayList<>();
+
+    LaneDispatcher(int freshWeight) {
+      this.scheduler = new LaneScheduler(freshWeight);
+      for (int i = 0; i < Lane.values().length; i++) {
+        lanes.add(new ArrayDeque<>());
+      }
+    }
+
+    synchronized void add(Lane lane, Runnable delivery) {
+      lanes.get(lane.ordinal()).add(delivery);
+    }
+
+    void runNext() {
+      final Runnable next;
+      synchronized (this) {
+        final int lane = scheduler.next(l -> !lanes.get(l).isEmpty());
+        if (lane < 0) {
+          return;
+        }
+        next = lanes.get(lane).poll();
+      }
+      next.run();
+    }
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    if (membership != null) {
+      membership.close();
+    }
+    if (flowControl != null) {
+      flowControl.close();
+    }
+    channels.close();
+  }
+}
@@ -0,0 +1,183 @@
+package de.upb.maven.ecosystem.transport.rabbitmq;
+
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.BuiltinExchangeType;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Delivery;
+import com.rabbitmq.client.ShutdownSignalException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Assigns the shard queues to the live workers. Every worker announces itself periodically on a
+ * fanout exchange and listens to the announcements of the others. A worker that was not heard of
+ * for {@link #EXPIRY_HEARTBEATS} heartbeats is considered gone. The shards are assigned by
+ * rendezvous hashing, thus, if a worker joins or leaves only the shards it gains or owned move.
+ */
+class ShardMembership implements AutoCloseable {
+  private static final Logger logger = LoggerFactory.getLogger(ShardMembership.class);
+  private static final int EXPIRY_HEARTBEATS = 3;
+  private static final String HEARTBEAT = "heartbeat";
+  private static final String LEAVE = "leave";
+
+  private final Channel channel;
+  private final String exchange;
+  private final String memberId;
+  private final int shardCount;
+  private final long heartbeatMs;
+  private final Consumer<Set<Integer>> onAssignment;
+  private final Map<String, Long> lastSeen = new ConcurrentHashMap<>();
+  private final ScheduledExecutorService scheduler;
+  private Set<Integer> assigned = Collections.emptySet();
+
+  /**
+   * @param channel the channel of the worker, publishing on it is synchronized on the channel
+   * @param exchange the fanout exchange of the workers of a queue
+   * @param memberId unique id of this worker
+   * @param onAssignment receives the shards of this worker whenever they change
+   */
+  ShardMembership(
+      Channel channel,
+      String exchange,
+      String memberId,
+      int shardCount,
+      long heartbeatMs,
+      Consumer<Set<Integer>> onAssignment) {
+    this.channel = channel;
+    this.exchange = exchange;
+    this.memberId = memberId;
+    this.shardCount = shardCount;
+    this.heartbeatMs = heartbeatMs;
+    this.onAssignment = onAssignment;
+    this.scheduler =
+        Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder()
+                .setNameFormat("shard-membership-%d")
+                .setDaemon(true)
+                .build());
+  }
+
+  public static long getHeartbeatMs() {
+    String res = System.getenv("SHARD_HEARTBEAT_MS");
+    if (res == null || res.isEmpty()) {
+      return 5000;
+    }
+    return Long.parseLong(res);
+  }
+
+  /**
+   * Assigns every shard to the member with the highest hash of member and shard.
+   *
+   * @return the shards of the member
+   */
+  static Set<Integer> assign(String member, Collection<String> members, int shardCount) {
+    Set<Integer> shards = new TreeSet<>();
+    for (int shard = 0; shard < shardCount; shard++) {
+      String owner = null;
+      long ownerWeight = Long.MIN_VALUE;
+      for (String candidate : members) {
+        long weight =
+            Hashing.murmur3_128()
+                .hashString(candidate + "#" + shard, StandardCharsets.UTF_8)
+                .asLong();
+        if (owner == null
+            || weight > ownerWeight
+            || (weight == ownerWeight && candidate.compareTo(owner) < 0)) {
+          owner = candidate;
+          ownerWeight = weight;
+        }
+      }
+      if (member.equals(owner)) {
+        shards.add(shard);
+      }
+    }
+    return shards;
+  }
+
+  void start() throws IOException {
+    synchronized (channel) {
+      channel.exchangeDeclare(exchange, BuiltinExchangeType.FANOUT);
+      // exclusive, server-named queue that receives the announcements of all workers
+      final String queue = channel.queueDeclare().getQueue();
+      channel.queueBind(queue, exchange, "");
+      channel.basicConsume(queue, true, (tag, delivery) -> onAnnouncement(delivery), tag -> {});
+    }
+    lastSeen.put(memberId, System.currentTimeMillis());
+    // until the others are heard of, this worker owns all shards
+    scheduler.execute(this::reassign);
+    scheduler.scheduleWithFixedDelay(this::heartbeat, 0, heartbeatMs, TimeUnit.MILLISECONDS);
+  }
+
+  private void onAnnouncement(Delivery delivery) {
+    final String member = new String(delivery.getBody(), StandardCharsets.UTF_8);
+    final boolean leaving = LEAVE.equals(delivery.getProperties().getType());
+    final boolean changed;
+    if (leaving) {
+      changed = lastSeen.remove(member) != null;
+    } else {
+      changed = lastSeen.put(member, System.currentTimeMillis()) == null;
+    }
+    if (changed) {
+      logger.info("[Worker] Worker {} {}", member, leaving ? "left" : "joined");
+      // (un)subscribing is an rpc, do not call it from the consumer thread
+      scheduler.execute(this::reassign);
+    }
+  }
+
+  private void heartbeat() {
+    try {
+      announce(HEARTBEAT);
+    } catch (IOException | ShutdownSignalException e) {
+      // the channel recovers, until then the others expire this worker
+      logger.warn("[Worker] Failed to send heartbeat", e);
+    }
+    final long now = System.currentTimeMillis();
+    lastSeen.put(memberId, now);
+    final boolean expired =
+        lastSeen.entrySet().removeIf(e -> now - e.getValue() > EXPIRY_HEARTBEATS * heartbeatMs);
+    if (expired) {
+      logger.info("[Worker] Workers expired, {} left", lastSeen.size());
+      reassign();
+    }
+  }
+
+  private void announce(String type) throws IOException {
+    final AMQP.BasicProperties props = new AMQP.BasicProperties.Builder().type(type).build();
+    synchronized (channel) {
+      channel.basicPublish(exchange, "", props, memberId.getBytes(StandardCharsets.UTF_8));
+    }
+  }
+
+  private void reassign() {
+    final Set<Integer> shards = assign(memberId, lastSeen.keySet(), shardCount);
+    if (!shards.equals(assigned)) {
+      assigned = shards;
+      logger.info("[Worker] {} workers, consuming shards {}", lastSeen.size(), shards);
+      onAssignment.accept(shards);
+    }
+  }
+
+  @Override
+  public void close() {
+    scheduler.shutdownNow();
+    try {
+      announce(LEAVE);
+    } catch (IOException | ShutdownSignalException e) {
+      logger.warn("[Worker] Failed to announce leave", e);
+    }
+  }
+}
@@ -0,0 +1,43 @@
+package de.upb.maven.ecosystem;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import org.junit.Test;
+import org.neo4j.driver.exceptions.TransientException;
+
+public class RetryPolicyTest {
+
+  @Test
+  public void classify() {
+    assertEquals(
+        ErrorClass.NETWORK,
+        ErrorClass.classify(new IOException("download failed", new SocketTimeoutException())));
+    assertEquals(
+        ErrorClass.NETWORK,
+        ErrorClass.classify(new IOException("Server returned HTTP response code: 503 for URL")));
+    assertEquals(
+        ErrorClass.PERMANENT,
+        ErrorClass.classify(new IOException("Server returned HTTP response code: 403 for URL")));
+    assertEquals(ErrorClass.PERMANENT, ErrorClass.classify(new FileNotFoundException("a.pom")));
+    assertEquals(
+        ErrorClass.DATABASE,
+        ErrorClass.classify(new TransientException("Neo.TransientError", "deadlock")));
+    assertEquals(ErrorClass.PERMANENT, ErrorClass.classify(new IllegalStateException()));
+  }
+
+  @Test
+  public void exponentialBackoff() {
+    RetryPolicy policy = new RetryPolicy(3, 1000, 3000);
+    assertEquals(1000, policy.delayMs(0));
+    assertEquals(2000, policy.delayMs(1));
+    assertEquals(3000, policy.delayMs(2));
+    assertEquals(3000, policy.delayMs(100));
+    assertTrue(policy.shouldRetry(2));
+    assertFalse(policy.shouldRetry(3));
+  }
+}
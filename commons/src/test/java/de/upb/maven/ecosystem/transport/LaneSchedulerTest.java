@@ -0,0 +1,32 @@
+package de.upb.maven.ecosystem.transport;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class LaneSchedulerTest {
+
+  @Test
+  public void weightedWhileBothLanesHaveMessages() {
+    LaneScheduler scheduler = new LaneScheduler(3);
+    int[] taken = new int[Lane.values().length];
+    for (int i = 0; i < 40; i++) {
+      taken[scheduler.next(lane -> true)]++;
+    }
+    assertEquals(30, taken[Lane.FRESH.ordinal()]);
+    assertEquals(10, taken[Lane.BACKFILL.ordinal()]);
+  }
+
+  @Test
+  public void emptyLanePassesItsTurn() {
+    LaneScheduler scheduler = new LaneScheduler(3);
+    for (int i = 0; i < 10; i++) {
+      assertEquals(
+          Lane.BACKFILL.ordinal(), scheduler.next(lane -> lane == Lane.BACKFILL.ordinal()));
+    }
+    for (int i = 0; i < 10; i++) {
+      assertEquals(Lane.FRESH.ordinal(), scheduler.next(lane -> lane == Lane.FRESH.ordinal()));
+    }
+    assertEquals(-1, scheduler.next(lane -> false));
+  }
+}
@@ -0,0 +1,84 @@
+package de.upb.maven.ecosystem.transport.inprocess;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class BoundedMpmcQueueTest {
+
+  @Test
+  public void offerAndPoll() {
+    BoundedMpmcQueue<Integer> queue = new BoundedMpmcQueue<>(3);
+    assertEquals(4, queue.capacity());
+    assertTrue(queue.isEmpty());
+    for (int i = 0; i < 4; i++) {
+      assertTrue(queue.offer(i));
+    }
+    assertFalse(queue.offer(4));
+    for (int i = 0; i < 4; i++) {
+      assertEquals(Integer.valueOf(i), queue.poll());
+    }
+    assertNull(queue.poll());
+    assertTrue(queue.isEmpty());
+  }
+
+  @Test
+  public void concurrentProducersAndConsumers() throws InterruptedException {
+    final int producers = 4;
+    final int consumers = 4;
+    final int perProducer = 50_000;
+    final BoundedMpmcQueue<Integer> queue = new BoundedMpmcQueue<>(64);
+    final ConcurrentHashMap<Integer, Boolean> received = new ConcurrentHashMap<>();
+    final AtomicInteger duplicates = new AtomicInteger();
+
+    List<Thread> threads = new ArrayList<>();
+    for (int p = 0; p < producers; p++) {
+      final int offset = p * perProducer;
+      threads.add(
+          new Thread(
+              () -> {
+                try {
+                  for (int i = 0; i < perProducer; i++) {
+                    queue.put(offset + i);
+                  }
+                } catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+                }
+              }));
+    }
+    for (int c = 0; c < consumers; c++) {
+      threads.add(
+          new Thread(
+              () -> {
+                try {
+                  Integer e;
+                  while ((e = queue.poll(1, TimeUnit.SECONDS)) != null) {
+                    if (received.put(e, Boolean.TRUE) != null) {
+                      duplicates.incrementAndGet();
+                    }
+                  }
+                } catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+                }
+              }));
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertEquals(0, duplicates.get());
+    assertEquals(producers * perProducer, received.size());
+    assertTrue(queue.isEmpty());
+  }
+}
@@ -0,0 +1,41 @@
+package de.upb.maven.ecosystem.transport.inprocess;
+
+import static org.junit.Assert.assertTrue;
+
+import de.upb.maven.ecosystem.transport.Message;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class InProcessTransportTest {
+
+  @Test
+  public void idleConsumersBlockAndWakeUp() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    InProcessTransport transport = new InProcessTransport(16);
+    try {
+      CountDownLatch handled = new CountDownLatch(2);
+      transport.consume(
+          message -> {
+            handled.countDown();
+            return null;
+          },
+          executor,
+          4);
+      // the consumers back off and block on the empty queues
+      Thread.sleep(200);
+      transport.publish(Message.of(null, "a"));
+      transport.publish(Message.of(null, "b"));
+      // woken up by publishing, not by the periodic re-check
+      assertTrue(handled.await(500, TimeUnit.MILLISECONDS));
+      assertTrue(transport.drain(1000));
+    } finally {
+      transport.close();
+      executor.shutdown();
+    }
+    // the blocked consumers stop once the transport is closed
+    assertTrue(executor.awaitTermination(500, TimeUnit.MILLISECONDS));
+  }
+}
@@ -0,0 +1,45 @@
+package de.upb.maven.ecosystem.transport.rabbitmq;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.Test;
+
+public class ShardMembershipTest {
+  private static final int SHARDS = 64;
+
+  @Test
+  public void everyShardHasOneOwner() {
+    List<String> members = Arrays.asList("worker-a", "worker-b", "worker-c");
+    Set<Integer> all = new HashSet<>();
+    int assigned = 0;
+    for (String member : members) {
+      Set<Integer> shards = ShardMembership.assign(member, members, SHARDS);
+      assigned += shards.size();
+      all.addAll(shards);
+    }
+    assertEquals(SHARDS, assigned);
+    assertEquals(SHARDS, all.size());
+  }
+
+  @Test
+  public void joiningWorkerOnlyTakesShards() {
+    List<String> before = Arrays.asList("worker-a", "worker-b", "worker-c");
+    List<String> after = Arrays.asList("worker-a", "worker-b", "worker-c", "worker-d");
+    for (String member : before) {
+      Set<Integer> kept = ShardMembership.assign(member, after, SHARDS);
+      // a joining worker never moves shards between the existing workers
+      assertTrue(ShardMembership.assign(member, before, SHARDS).containsAll(kept));
+    }
+  }
+
+  @Test
+  public void singleWorkerOwnsAllShards() {
+    assertEquals(
+        SHARDS, ShardMembership.assign("worker-a", Arrays.asList("worker-a"), SHARDS).size());
+  }
+}
@@ -0,0 +1,61 @@
+package de.upb.maven.ecosystem.allinone;
+
+import de.upb.maven.ecosystem.RabbitMQCollective;
+import de.upb.maven.ecosystem.transport.inprocess.InProcessTransport;
+import de.upb.maven.ecosystem.transport.rabbitmq.PublisherFlowControl;
+import java.io.IOException;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs the index producer and the crawler workers in a single process. The artifacts are handed
+ * over by an in-JVM queue, thus, no rabbitmq broker is required. The workers are configured by
+ * WORKER_THREADS and WORKER_EXECUTOR as usual.
+ *
+ * <p>On shutdown, the producer drains first and persists its position, only then the workers empty
+ * the queue. The in-process workers stop once the queue is empty, thus, a producer that is still
+ * publishing would block on the full queue and lose its position.
+ */
+public class Main {
+  private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(Main.class);
+  private static final long DRAIN_LOG_INTERVAL_MS = 60_000;
+
+  public static int getInProcessQueueCapacity() {
+    String res = System.getenv("IN_PROCESS_QUEUE_CAPACITY");
+    if (res == null || res.isEmpty()) {
+      return PublisherFlowControl.getQueueTargetDepth() * RabbitMQCollective.getWorkerThreads();
+    }
+    return Integer.parseInt(res);
+  }
+
+  public static void main(String[] args) throws Exception {
+    final InProcessTransport transport = new InProcessTransport(getInProcessQueueCapacity());
+
+    final de.upb.maven.ecosystem.crawler.Main worker =
+        new de.upb.maven.ecosystem.crawler.Main(transport);
+    final de.upb.maven.ecosystem.indexer.Main producer =
+        new de.upb.maven.ecosystem.indexer.Main(transport);
+    Runtime.getRuntime()
+        .addShutdownHook(new Thread(() -> drain(producer, worker, transport), "drain"));
+
+    worker.run(false);
+    producer.run(false);
+
+    while (!transport.awaitDelivered(DRAIN_LOG_INTERVAL_MS)) {
+      LOGGER.info("Waiting for the workers to finish the queued artifacts");
+    }
+    LOGGER.info("All artifacts processed");
+    transport.close();
+    System.exit(0);
+  }
+
+  private static void drain(
+      RabbitMQCollective producer, RabbitMQCollective worker, InProcessTransport transport) {
+    producer.drain();
+    worker.drain();
+    try {
+      transport.close();
+    } catch (IOException e) {
+      LOGGER.warn("Failed to close the transport", e);
+    }
+  }
+}
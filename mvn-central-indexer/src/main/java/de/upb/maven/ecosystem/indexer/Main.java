@@ -3,18 +3,25 @@ package de.upb.maven.ecosystem.indexer;
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.PropertyAccessor;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.rabbitmq.client.AMQP;
-import com.rabbitmq.client.Delivery;
 import de.upb.maven.ecosystem.AbstractCrawler;
 import de.upb.maven.ecosystem.QueueNames;
+import de.upb.maven.ecosystem.indexer.producer.IndexSnapshot;
 import de.upb.maven.ecosystem.indexer.producer.MavenIndexProducer;
+import de.upb.maven.ecosystem.indexer.producer.ProducerDaemon;
 import de.upb.maven.ecosystem.persistence.dao.DoaMvnArtifactNodeImpl;
 import de.upb.maven.ecosystem.persistence.dao.Neo4JConnector;
+import de.upb.maven.ecosystem.transport.Message;
+import de.upb.maven.ecosystem.transport.Transport;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import org.slf4j.LoggerFactory;
 
 public class Main extends AbstractCrawler {
   private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(Main.class);
 
+  private static final String EXPORT_SNAPSHOT = "export-snapshot";
+  private static final String DIFF_SNAPSHOTS = "diff-snapshots";
+
   private static final ObjectMapper mapper = new ObjectMapper();
 
   public Main() {
@@ -22,11 +29,59 @@ public class Main extends AbstractCrawler {
     mapper.setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY);
   }
 
+  /**
+   * Runs a producer that publishes to the given transport, e.g., to workers in the same JVM.
+   *
+   * @param transport
+   */
+  public Main(Transport transport) {
+    super(QueueNames.MVN_INDEX_QUEUE_NAME, false, transport);
+    mapper.setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY);
+  }
+
   public static void main(String[] args) throws Exception {
     Main main = new Main();
+    if (args.length > 0 && EXPORT_SNAPSHOT.equals(args[0])) {
+      Path file =
+          args.length > 1
+              ? Paths.get(args[1])
+              : Paths.get(MavenIndexProducer.getIndexDirFromEnvironment(), "index.snapshot");
+      // the export does not query the database
+      new MavenIndexProducer(main, null).exportSnapshots(file);
+      System.exit(0);
+    }
+    if (args.length > 2 && DIFF_SNAPSHOTS.equals(args[0])) {
+      diffSnapshots(IndexSnapshot.open(Paths.get(args[1])), IndexSnapshot.open(Paths.get(args[2])));
+      System.exit(0);
+    }
     main.run();
   }
 
+  /**
+   * Prints the artifacts added to the newer snapshot as
+   * groupId:artifactId:version[:classifier]:extension.
+   */
+  private static void diffSnapshots(IndexSnapshot older, IndexSnapshot newer) {
+    final int[] added = {0};
+    IndexSnapshot.diff(
+        older,
+        newer,
+        row -> {
+          added[0]++;
+          final String classifier = newer.getClassifier(row);
+          System.out.println(
+              newer.getGroupId(row)
+                  + ":"
+                  + newer.getArtifactId(row)
+                  + ":"
+                  + newer.getVersion(row)
+                  + (classifier == null ? "" : ":" + classifier)
+                  + ":"
+                  + newer.getFileExtension(row));
+        });
+    LOGGER.info("{} of {} artifacts added", added[0], newer.size());
+  }
+
   @Override
   protected void preFlightCheck() {
     try {
@@ -38,16 +93,26 @@ public class Main extends AbstractCrawler {
   }
 
   @Override
-  protected void doWorkerJob(Delivery delivery) {
+  protected Message doWorkerJob(Message message) {
 
     LOGGER.info("No Worker registered");
+    return null;
   }
 
   @Override
-  protected void doProducerJob(AMQP.BasicProperties props) throws Exception {
+  protected void doProducerJob() throws Exception {
     final MavenIndexProducer basicUsageExample =
         new MavenIndexProducer(this, new DoaMvnArtifactNodeImpl(Neo4JConnector.getDriver()));
-    basicUsageExample.perform(props);
+    if (ProducerDaemon.isDaemonFromEnvironment()) {
+      new ProducerDaemon(
+              basicUsageExample,
+              this,
+              ProducerDaemon.getIntervalMsFromEnvironment(),
+              ProducerDaemon.getStatusFile())
+          .run();
+    } else {
+      basicUsageExample.perform();
+    }
   }
 
   @Override
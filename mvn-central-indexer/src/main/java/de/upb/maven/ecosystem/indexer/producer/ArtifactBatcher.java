@@ -0,0 +1,209 @@
+package de.upb.maven.ecosystem.indexer.producer;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import de.upb.maven.ecosystem.RabbitMQCollective;
+import de.upb.maven.ecosystem.ShardRouting;
+import de.upb.maven.ecosystem.msg.ArtifactBatch;
+import de.upb.maven.ecosystem.msg.CustomArtifactInfo;
+import de.upb.maven.ecosystem.transport.Lane;
+import de.upb.maven.ecosystem.transport.Message;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Packs the artifacts of the producer into {@link ArtifactBatch} messages. A batch is sent once it
+ * holds {@link #getBatchSizeFromEnvironment()} artifacts or once its oldest artifact waited for
+ * {@link #getBatchLingerFromEnvironment()} ms. With a batch size of 1 every artifact is sent as a
+ * single {@link CustomArtifactInfo} message, as before. There is a batch per lane and shard, so
+ * that a batch only holds artifacts of the same queue. If a batch sent by the linger timer fails,
+ * the failure is rethrown by every later {@link #add}, {@link #flush()} and {@link #close()}, so
+ * the scan fails instead of checkpointing artifacts that were never sent.
+ */
+public class ArtifactBatcher implements AutoCloseable {
+
+  private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(ArtifactBatcher.class);
+  private final RabbitMQCollective collective;
+  private final int batchSize;
+  private final long lingerMs;
+  private final int shardCount;
+  private final ShardRouting.Key shardKey;
+  private final ScheduledExecutorService lingerTimer;
+
+  private final Map<Integer, Batch> batches = new HashMap<>();
+  // guarded by this, the batches taken by the linger timer that are not sent yet
+  private int lingeringSends = 0;
+  // guarded by this, the first failed send of the linger timer
+  private IOException lingerFailure;
+
+  public ArtifactBatcher(
+      RabbitMQCollective collective,
+      int batchSize,
+      long lingerMs,
+      int shardCount,
+      ShardRouting.Key shardKey) {
+    this.collective = collective;
+    this.batchSize = Math.max(1, batchSize);
+    this.lingerMs = lingerMs;
+    this.shardCount = shardCount;
+    this.shardKey = shardKey;
+    this.lingerTimer =
+        Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("batch-linger-%d").setDaemon(true).build());
+    LOGGER.info("BATCH_SIZE: {}", this.batchSize);
+    LOGGER.info("BATCH_LINGER_MS: {}", lingerMs);
+    LOGGER.info("SHARD_BY: {}", shardKey);
+  }
+
+  public static int getBatchSizeFromEnvironment() {
+    String res = System.getenv("BATCH_SIZE");
+    if (res == null || res.isEmpty()) {
+      return 1;
+    }
+    return Integer.parseInt(res);
+  }
+
+  public static long getBatchLingerFromEnvironment() {
+    String res = System.getenv("BATCH_LINGER_MS");
+    if (res == null || res.isEmpty()) {
+      return 1000;
+    }
+    return Long.parseLong(res);
+  }
+
+  /** Adds the artifact to the backfill lane. */
+  public void add(CustomArtifactInfo artifactInfo) throws IOException, InterruptedException {
+    add(artifactInfo, Lane.BACKFILL);
+  }
+
+  /**
+   * Adds the artifact to the batch of its lane and shard and sends the batch if it is full. Blocks
+   * if the collective applies back pressure.
+   */
+  public void add(CustomArtifactInfo artifactInfo, Lane lane)
+      throws IOException, InterruptedException {
+    checkLingerFailure();
+    final int shard = ShardRouting.shardOf(artifactInfo, shardKey, shardCount);
+    if (batchSize == 1) {
+      collective.enqueue(Message.of(null, artifactInfo, shard, lane));
+      return;
+    }
+    final int key = lane.ordinal() * shardCount + shard;
+    List<CustomArtifactInfo> full = null;
+    synchronized (this) {
+      final Batch batch = batches.computeIfAbsent(key, x -> new Batch());
+      batch.artifacts.add(artifactInfo);
+      if (batch.artifacts.size() == 1) {
+        final long generation = batch.generation;
+        lingerTimer.schedule(
+            () -> flushLingering(key, generation), lingerMs, TimeUnit.MILLISECONDS);
+      }
+      if (batch.artifacts.size() >= batchSize) {
+        full = batch.take();
+      }
+    }
+    // enqueue outside of the lock, it may block until the workers caught up
+    send(key, full);
+  }
+
+  /**
+   * Sends the current batches, even if they are not full, and waits for the batches the linger
+   * timer is sending.
+   */
+  public void flush() throws IOException, InterruptedException {
+    checkLingerFailure();
+    Map<Integer, List<CustomArtifactInfo>> toSend = new HashMap<>();
+    synchronized (this) {
+      for (Map.Entry<Integer, Batch> entry : batches.entrySet()) {
+        toSend.put(entry.getKey(), entry.getValue().take());
+      }
+    }
+    for (Map.Entry<Integer, List<CustomArtifactInfo>> entry : toSend.entrySet()) {
+      send(entry.getKey(), entry.getValue());
+    }
+    synchronized (this) {
+      while (lingeringSends > 0) {
+        wait();
+      }
+    }
+    checkLingerFailure();
+  }
+
+  private synchronized void checkLingerFailure() throws IOException {
+    if (lingerFailure != null) {
+      throw new IOException("Failed to send a lingering batch", lingerFailure);
+    }
+  }
+
+  private void flushLingering(int key, long generation) {
+    List<CustomArtifactInfo> toSend;
+    synchronized (this) {
+      final Batch batch = batches.get(key);
+      if (batch.generation != generation) {
+        // the batch has already been sent
+        return;
+      }
+      toSend = batch.take();
+      lingeringSends++;
+    }
+    IOException failure = null;
+    try {
+      send(key, toSend);
+    } catch (IOException e) {
+      failure = e;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      failure = new InterruptedIOException("Interrupted while sending a lingering batch");
+    }
+    synchronized (this) {
+      if (failure != null) {
+        LOGGER.error("Failed to send lingering batch of {} artifacts", toSend.size(), failure);
+        if (lingerFailure == null) {
+          lingerFailure = failure;
+        }
+      }
+      lingeringSends--;
+      notifyAll();
+    }
+  }
+
+  /** @param key the lane ordinal times the shard count plus the shard */
+  private void send(int key, List<CustomArtifactInfo> artifacts)
+      throws IOException, InterruptedException {
+    if (artifacts == null || artifacts.isEmpty()) {
+      return;
+    }
+    final Lane lane = Lane.values()[key / shardCount];
+    final int shard = key % shardCount;
+    LOGGER.info(
+        "Queueing batch of {} artifacts to shard {} of lane {}", artifacts.size(), shard, lane);
+    collective.enqueue(
+        Message.of(ArtifactBatch.MESSAGE_TYPE, new ArtifactBatch(artifacts), shard, lane));
+  }
+
+  @Override
+  public void close() throws IOException, InterruptedException {
+    flush();
+    lingerTimer.shutdownNow();
+  }
+
+  private class Batch {
+    private List<CustomArtifactInfo> artifacts = new ArrayList<>(batchSize);
+    // identifies the current batch, to avoid flushing a newer batch by an outdated linger timer
+    private long generation = 0;
+
+    private List<CustomArtifactInfo> take() {
+      List<CustomArtifactInfo> taken = artifacts;
+      artifacts = new ArrayList<>(batchSize);
+      generation++;
+      return taken;
+    }
+  }
+}
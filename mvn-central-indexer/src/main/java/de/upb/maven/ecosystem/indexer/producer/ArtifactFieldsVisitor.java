@@ -0,0 +1,144 @@
+package de.upb.maven.ecosystem.indexer.producer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.StoredFieldVisitor;
+import org.apache.maven.index.ArtifactInfo;
+
+/**
+ * Reads only the stored fields of an index document the producer uses, the UINFO and INFO of the
+ * minimal index creator, into a reusable record. Unlike {@code IndexUtils.constructArtifactInfo},
+ * the other stored fields, e.g., the class names of the jarContent creator, are not decoded and no
+ * document or {@link ArtifactInfo} is allocated. The fields are decoded like {@code
+ * MinimalArtifactInfoIndexCreator} does. Not thread-safe, every scan task uses its own.
+ */
+public class ArtifactFieldsVisitor extends StoredFieldVisitor {
+  private static final char FS = '|';
+
+  private final String[] parts = new String[7];
+  private String uinfo;
+  private String info;
+
+  private String groupId;
+  private String artifactId;
+  private String version;
+  private String classifier;
+  private String fileExtension;
+  private String packaging;
+  private long lastModified;
+
+  /**
+   * Reads the document into this record, replacing the previous one.
+   *
+   * @return false if the document is not an artifact, e.g., a deletion marker or the descriptor
+   */
+  public boolean read(IndexReader reader, int docId) throws IOException {
+    uinfo = null;
+    info = null;
+    reader.document(docId, this);
+    if (uinfo == null) {
+      return false;
+    }
+    int count = split(uinfo);
+    if (count < 4) {
+      return false;
+    }
+    groupId = parts[0];
+    artifactId = parts[1];
+    version = parts[2];
+    classifier = renvl(parts[3]);
+    fileExtension = count > 4 ? parts[4] : null;
+    packaging = null;
+    lastModified = 0;
+    if (info != null) {
+      count = split(info);
+      packaging = renvl(parts[0]);
+      lastModified = count > 1 ? Long.parseLong(parts[1]) : 0;
+      if (count > 6) {
+        fileExtension = parts[6];
+      } else if (classifier != null
+          || "pom".equals(packaging)
+          || "war".equals(packaging)
+          || "ear".equals(packaging)) {
+        fileExtension = packaging;
+      } else {
+        // best guess, as the index creator
+        fileExtension = "jar";
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public Status needsField(FieldInfo fieldInfo) {
+    if (ArtifactInfo.UINFO.equals(fieldInfo.name) || ArtifactInfo.INFO.equals(fieldInfo.name)) {
+      return Status.YES;
+    }
+    return uinfo != null && info != null ? Status.STOP : Status.NO;
+  }
+
+  @Override
+  public void stringField(FieldInfo fieldInfo, byte[] value) {
+    final String field = new String(value, StandardCharsets.UTF_8);
+    if (ArtifactInfo.UINFO.equals(fieldInfo.name)) {
+      uinfo = field;
+    } else {
+      info = field;
+    }
+  }
+
+  /** Splits the field at the separator into the reused parts, ignoring excess parts. */
+  private int split(String field) {
+    int count = 0;
+    int start = 0;
+    while (count < parts.length) {
+      final int end = field.indexOf(FS, start);
+      if (end < 0) {
+        parts[count++] = field.substring(start);
+        break;
+      }
+      parts[count++] = field.substring(start, end);
+      start = end + 1;
+    }
+    return count;
+  }
+
+  private static String renvl(String value) {
+    return ArtifactInfo.NA.equals(value) ? null : value;
+  }
+
+  /** The raw UINFO field, the unique key of the artifact in an index. */
+  public String getUinfo() {
+    return uinfo;
+  }
+
+  public String getGroupId() {
+    return groupId;
+  }
+
+  public String getArtifactId() {
+    return artifactId;
+  }
+
+  public String getVersion() {
+    return version;
+  }
+
+  public String getClassifier() {
+    return classifier;
+  }
+
+  public String getFileExtension() {
+    return fileExtension;
+  }
+
+  public String getPackaging() {
+    return packaging;
+  }
+
+  public long getLastModified() {
+    return lastModified;
+  }
+}
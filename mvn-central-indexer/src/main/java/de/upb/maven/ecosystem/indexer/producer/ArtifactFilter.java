@@ -0,0 +1,141 @@
+package de.upb.maven.ecosystem.indexer.producer;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.Query;
+import org.apache.maven.index.Indexer;
+import org.apache.maven.index.MAVEN;
+import org.apache.maven.index.expr.SourcedSearchExpression;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Selects the artifacts of a targeted crawl, configured by ARTIFACT_FILTER as a comma-separated
+ * list of {@code key=value}:
+ *
+ * <ul>
+ *   <li>{@code groupId} and {@code artifactId}, patterns with the wildcards {@code *} and {@code
+ *       ?}, e.g., {@code groupId=org.springframework*}
+ *   <li>{@code packaging}, alternatives separated by {@code |}, e.g., {@code packaging=jar|pom}
+ *   <li>{@code modifiedFrom} and {@code modifiedTo}, the range of the last modified date as {@code
+ *       yyyy-MM-dd} in UTC, inclusive and exclusive
+ * </ul>
+ *
+ * The coordinates and the packaging are indexed, they are compiled to a query that selects the
+ * documents of the scan. The last modified date is only stored, it is checked for every selected
+ * document.
+ */
+public class ArtifactFilter {
+  private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(ArtifactFilter.class);
+
+  private final String spec;
+  private String groupId;
+  private String artifactId;
+  private final List<String> packagings = new ArrayList<>();
+  private long modifiedFrom = 0;
+  private long modifiedTo = Long.MAX_VALUE;
+
+  private ArtifactFilter(String spec) {
+    this.spec = spec;
+  }
+
+  /** @return the filter, or null to crawl all artifacts */
+  public static ArtifactFilter fromEnvironment() {
+    String res = System.getenv("ARTIFACT_FILTER");
+    if (res == null || res.isEmpty()) {
+      return null;
+    }
+    final ArtifactFilter filter = parse(res);
+    LOGGER.info("ARTIFACT_FILTER: {}", filter);
+    return filter;
+  }
+
+  static ArtifactFilter parse(String spec) {
+    final ArtifactFilter filter = new ArtifactFilter(spec.trim());
+    for (String entry : spec.split(",")) {
+      entry = entry.trim();
+      if (entry.isEmpty()) {
+        continue;
+      }
+      final int eq = entry.indexOf('=');
+      if (eq <= 0 || eq == entry.length() - 1) {
+        throw new IllegalArgumentException("Expected key=value, got " + entry);
+      }
+      final String key = entry.substring(0, eq).trim();
+      final String value = entry.substring(eq + 1).trim();
+      switch (key) {
+        case "groupId":
+          filter.groupId = value;
+          break;
+        case "artifactId":
+          filter.artifactId = value;
+          break;
+        case "packaging":
+          Arrays.stream(value.split("\\|"))
+              .map(String::trim)
+              .filter(packaging -> !packaging.isEmpty())
+              .forEach(filter.packagings::add);
+          break;
+        case "modifiedFrom":
+          filter.modifiedFrom = toEpochMillis(value);
+          break;
+        case "modifiedTo":
+          filter.modifiedTo = toEpochMillis(value);
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown filter " + key + " in " + spec);
+      }
+    }
+    return filter;
+  }
+
+  private static long toEpochMillis(String date) {
+    return LocalDate.parse(date).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+  }
+
+  /**
+   * Compiles the indexed conditions with the query creator of the indexer.
+   *
+   * @return the query, or null if all documents are selected
+   */
+  public Query toQuery(Indexer indexer) {
+    final BooleanQuery.Builder query = new BooleanQuery.Builder();
+    boolean empty = true;
+    if (groupId != null) {
+      query.add(
+          indexer.constructQuery(MAVEN.GROUP_ID, new SourcedSearchExpression(groupId)),
+          BooleanClause.Occur.FILTER);
+      empty = false;
+    }
+    if (artifactId != null) {
+      query.add(
+          indexer.constructQuery(MAVEN.ARTIFACT_ID, new SourcedSearchExpression(artifactId)),
+          BooleanClause.Occur.FILTER);
+      empty = false;
+    }
+    if (!packagings.isEmpty()) {
+      final BooleanQuery.Builder anyPackaging = new BooleanQuery.Builder();
+      for (String packaging : packagings) {
+        anyPackaging.add(
+            indexer.constructQuery(MAVEN.PACKAGING, new SourcedSearchExpression(packaging)),
+            BooleanClause.Occur.SHOULD);
+      }
+      query.add(anyPackaging.build(), BooleanClause.Occur.FILTER);
+      empty = false;
+    }
+    return empty ? null : query.build();
+  }
+
+  public boolean acceptsLastModified(long lastModified) {
+    return lastModified >= modifiedFrom && lastModified < modifiedTo;
+  }
+
+  @Override
+  public String toString() {
+    return spec;
+  }
+}
@@ -0,0 +1,173 @@
+package de.upb.maven.ecosystem.indexer.producer;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import de.upb.maven.ecosystem.msg.CustomArtifactInfo;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.BooleanSupplier;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Orders the artifacts of a scan pass by group, artifact, version and classifier, so that
+ * consecutive messages share their parent poms and BOMs. Up to {@link
+ * #getBufferSizeFromEnvironment()} artifacts are sorted in memory, beyond that the sorted runs are
+ * spilled to files and merged when the pass is sent.
+ */
+public class ArtifactSorter implements AutoCloseable {
+  private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(ArtifactSorter.class);
+
+  static final Comparator<CustomArtifactInfo> GAV_ORDER =
+      Comparator.comparing(
+              CustomArtifactInfo::getGroupId,
+              Comparator.nullsFirst(Comparator.<String>naturalOrder()))
+          .thenComparing(
+              CustomArtifactInfo::getArtifactId,
+              Comparator.nullsFirst(Comparator.<String>naturalOrder()))
+          .thenComparing(
+              CustomArtifactInfo::getArtifactVersion,
+              Comparator.nullsFirst(Comparator.<String>naturalOrder()))
+          .thenComparing(
+              CustomArtifactInfo::getClassifier,
+              Comparator.nullsFirst(Comparator.<String>naturalOrder()));
+
+  private final ObjectMapper mapper = new ObjectMapper();
+  private final int bufferSize;
+  private final Path spillDir;
+  private final List<Path> runs = new ArrayList<>();
+  private List<CustomArtifactInfo> buffer = new ArrayList<>();
+
+  /** Receives the artifacts in order. */
+  public interface Sink {
+    void accept(CustomArtifactInfo artifactInfo) throws IOException, InterruptedException;
+  }
+
+  /**
+   * @param bufferSize the number of artifacts sorted in memory
+   * @param spillDir the directory of the spilled runs
+   */
+  public ArtifactSorter(int bufferSize, Path spillDir) {
+    this.bufferSize = Math.max(1, bufferSize);
+    this.spillDir = spillDir;
+  }
+
+  public static boolean isOrderedEmissionFromEnvironment() {
+    String res = System.getenv("ORDERED_EMISSION");
+    if (res == null || res.isEmpty()) {
+      return false;
+    }
+    return Boolean.parseBoolean(res);
+  }
+
+  public static int getBufferSizeFromEnvironment() {
+    String res = System.getenv("SORT_BUFFER_SIZE");
+    if (res == null || res.isEmpty()) {
+      return 200_000;
+    }
+    return Integer.parseInt(res);
+  }
+
+  public synchronized void add(CustomArtifactInfo artifactInfo) throws IOException {
+    buffer.add(artifactInfo);
+    if (buffer.size() >= bufferSize) {
+      spill();
+    }
+  }
+
+  private void spill() throws IOException {
+    buffer.sort(GAV_ORDER);
+    Files.createDirectories(spillDir);
+    final Path run = Files.createTempFile(spillDir, "artifacts", ".run");
+    runs.add(run);
+    try (SequenceWriter writer =
+        mapper.writerFor(CustomArtifactInfo.class).writeValues(run.toFile())) {
+      writer.writeAll(buffer);
+    }
+    LOGGER.info("Spilled {} artifacts to {}", buffer.size(), run);
+    buffer = new ArrayList<>();
+  }
+
+  /**
+   * Sends the artifacts added so far in order, by merging the spilled runs and the buffer, and
+   * starts over.
+   *
+   * @param stop checked before every artifact, to abandon the remaining ones
+   * @return false if stopped before all artifacts were sent
+   */
+  public synchronized boolean sendTo(Sink sink, BooleanSupplier stop)
+      throws IOException, InterruptedException {
+    buffer.sort(GAV_ORDER);
+    final ObjectReader reader = mapper.readerFor(CustomArtifactInfo.class);
+    final List<Iterator<CustomArtifactInfo>> sources = new ArrayList<>();
+    final PriorityQueue<Head> heads = new PriorityQueue<>();
+    try {
+      for (Path run : runs) {
+        sources.add(reader.readValues(run.toFile()));
+      }
+      sources.add(buffer.iterator());
+      for (Iterator<CustomArtifactInfo> source : sources) {
+        Head.advance(source, heads);
+      }
+      while (!heads.isEmpty()) {
+        if (stop.getAsBoolean()) {
+          return false;
+        }
+        final Head head = heads.poll();
+        sink.accept(head.artifactInfo);
+        Head.advance(head.source, heads);
+      }
+      return true;
+    } finally {
+      for (Iterator<CustomArtifactInfo> source : sources) {
+        if (source instanceof MappingIterator) {
+          ((MappingIterator<?>) source).close();
+        }
+      }
+      clear();
+    }
+  }
+
+  /** Drops the artifacts added so far. */
+  private void clear() throws IOException {
+    for (Path run : runs) {
+      Files.deleteIfExists(run);
+    }
+    runs.clear();
+    buffer = new ArrayList<>();
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    clear();
+  }
+
+  /** The next artifact of a sorted source. */
+  private static class Head implements Comparable<Head> {
+    private final CustomArtifactInfo artifactInfo;
+    private final Iterator<CustomArtifactInfo> source;
+
+    private Head(CustomArtifactInfo artifactInfo, Iterator<CustomArtifactInfo> source) {
+      this.artifactInfo = artifactInfo;
+      this.source = source;
+    }
+
+    private static void advance(Iterator<CustomArtifactInfo> source, PriorityQueue<Head> heads) {
+      if (source.hasNext()) {
+        heads.add(new Head(source.next(), source));
+      }
+    }
+
+    @Override
+    public int compareTo(Head other) {
+      return GAV_ORDER.compare(artifactInfo, other.artifactInfo);
+    }
+  }
+}
@@ -0,0 +1,362 @@
+package de.upb.maven.ecosystem.indexer.producer;
+
+import com.google.common.hash.Hashing;
+import de.upb.maven.ecosystem.persistence.dao.DaoMvnArtifactNode;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The artifacts that are already crawled by the current crawler version, as a sorted file of 64-bit
+ * hashes of their coordinates. The file is exported from the database in a single streaming query,
+ * kept between runs and memory-mapped, thus, the producer skips known artifacts without a query and
+ * 10M artifacts take 80 MB of page cache instead of heap. The export sorts runs of {@link
+ * #RUN_SIZE} hashes in memory, spills them next to the file and merges them into it.
+ *
+ * <p>Like {@link DaoMvnArtifactNode#findMissingOrStale}, coordinates that match several nodes count
+ * as stale, only coordinates whose single node is up to date are contained.
+ *
+ * <p>The set is only used to skip artifacts. An artifact crawled after the export is not contained
+ * and is checked against the database as before. A hash collision skips an artifact wrongly, for
+ * 10M artifacts about once in 10^12 lookups.
+ */
+public class CrawledArtifactSet {
+  private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(CrawledArtifactSet.class);
+
+  // 8 MB of hashes sorted in memory during the export
+  static final int RUN_SIZE = 1 << 20;
+
+  private final String crawlerVersion;
+  private final long exportedAt;
+  private final LongBuffer hashes;
+
+  private CrawledArtifactSet(String crawlerVersion, long exportedAt, LongBuffer hashes) {
+    this.crawlerVersion = crawlerVersion;
+    this.exportedAt = exportedAt;
+    this.hashes = hashes;
+  }
+
+  public static Path getSetFile() {
+    String res = System.getenv("CRAWLED_SET_FILE");
+    if (res == null || res.isEmpty()) {
+      return Paths.get(MavenIndexProducer.getIndexDirFromEnvironment(), "crawled.set");
+    }
+    return Paths.get(res);
+  }
+
+  /** The set is exported again once it is older, to include the artifacts crawled meanwhile. */
+  public static long getMaxAgeMs() {
+    String res = System.getenv("CRAWLED_SET_MAX_AGE_HOURS");
+    if (res == null || res.isEmpty()) {
+      return TimeUnit.HOURS.toMillis(24);
+    }
+    return TimeUnit.HOURS.toMillis(Long.parseLong(res));
+  }
+
+  /**
+   * Opens the set of the file, or exports it from the database if the file is missing, outdated or
+   * of another crawler version.
+   */
+  public static CrawledArtifactSet load(
+      Path file, DaoMvnArtifactNode dao, String crawlerVersion, long maxAgeMs) throws IOException {
+    CrawledArtifactSet set = open(file);
+    if (set != null
+        && set.crawlerVersion.equals(crawlerVersion)
+        && System.currentTimeMillis() - set.exportedAt <= maxAgeMs) {
+      LOGGER.info("Using {} crawled artifacts of {}", set.size(), file);
+      return set;
+    }
+    LOGGER.info("Exporting the crawled artifacts from the database");
+    try (Export export = new Export(file, crawlerVersion, System.currentTimeMillis(), RUN_SIZE)) {
+      final IOException[] failure = {null};
+      dao.forEachArtifact(
+          crawlerVersion,
+          (gavc, upToDate) -> {
+            if (failure[0] != null) {
+              return;
+            }
+            try {
+              export.add(
+                  hash(
+                      gavc.getGroup(), gavc.getArtifact(), gavc.getVersion(), gavc.getClassifier()),
+                  upToDate);
+            } catch (IOException e) {
+              failure[0] = e;
+            }
+          });
+      if (failure[0] != null) {
+        throw failure[0];
+      }
+      export.commit();
+    }
+    set = open(file);
+    LOGGER.info("Exported {} crawled artifacts to {}", set.size(), file);
+    return set;
+  }
+
+  /**
+   * Writes the hashes of an export to the file. The hashes are sorted in runs of a fixed size, the
+   * runs are spilled to files and merged, thus, the heap does not grow with the number of nodes.
+   */
+  static class Export implements Closeable {
+    private final Path file;
+    private final String crawlerVersion;
+    private final long exportedAt;
+    private final Path spillDir;
+    private final List<Path> runs = new ArrayList<>();
+    private final long[] buffer;
+    private int size = 0;
+
+    Export(Path file, String crawlerVersion, long exportedAt, int runSize) {
+      this.file = file;
+      this.crawlerVersion = crawlerVersion;
+      this.exportedAt = exportedAt;
+      this.spillDir = file.resolveSibling(file.getFileName() + ".runs");
+      this.buffer = new long[Math.max(1, runSize)];
+    }
+
+    /**
+     * @param hash the hash of the coordinates of a node
+     * @param upToDate if the node is fully resolved by the crawler version
+     */
+    void add(long hash, boolean upToDate) throws IOException {
+      append(hash);
+      if (!upToDate) {
+        // a stale node counts as a duplicate, thus, its coordinates are dropped like ambiguous ones
+        append(hash);
+      }
+    }
+
+    private void append(long hash) throws IOException {
+      if (size == buffer.length) {
+        spill();
+      }
+      buffer[size++] = hash;
+    }
+
+    private void spill() throws IOException {
+      Arrays.sort(buffer, 0, size);
+      Files.createDirectories(spillDir);
+      final Path run = Files.createTempFile(spillDir, "hashes", ".run");
+      try (DataOutputStream out =
+          new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run)))) {
+        for (int i = 0; i < size; i++) {
+          out.writeLong(buffer[i]);
+        }
+      }
+      runs.add(run);
+      size = 0;
+    }
+
+    /**
+     * Merges the runs and keeps the hashes that occur once, replacing the file atomically.
+     *
+     * @return the number of hashes written
+     */
+    int commit() throws IOException {
+      Arrays.sort(buffer, 0, size);
+      final List<DataInputStream> inputs = new ArrayList<>();
+      final PriorityQueue<Head> heads = new PriorityQueue<>();
+      if (file.getParent() != null) {
+        Files.createDirectories(file.getParent());
+      }
+      final Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+      int written = 0;
+      try {
+        for (Path run : runs) {
+          final DataInputStream in =
+              new DataInputStream(new BufferedInputStream(Files.newInputStream(run), 1 << 16));
+          inputs.add(in);
+          final long count = Files.size(run) / Long.BYTES;
+          Head.advance(new Head(in, count), heads);
+        }
+        Head.advance(new Head(buffer, size), heads);
+        try (DataOutputStream out =
+            new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+          out.writeUTF(crawlerVersion);
+          out.writeLong(exportedAt);
+          // patched once the hashes are counted
+          out.writeInt(0);
+          long current = 0;
+          int occurrences = 0;
+          while (!heads.isEmpty()) {
+            final Head head = heads.poll();
+            final long hash = head.value;
+            Head.advance(head, heads);
+            if (occurrences > 0 && hash == current) {
+              occurrences++;
+              continue;
+            }
+            if (occurrences == 1) {
+              out.writeLong(current);
+              written++;
+            }
+            current = hash;
+            occurrences = 1;
+          }
+          if (occurrences == 1) {
+            out.writeLong(current);
+            written++;
+          }
+        }
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+          final ByteBuffer count = ByteBuffer.allocate(Integer.BYTES).putInt(0, written);
+          channel.write(
+              count, 2 + crawlerVersion.getBytes(StandardCharsets.UTF_8).length + Long.BYTES);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } finally {
+        for (DataInputStream in : inputs) {
+          in.close();
+        }
+        Files.deleteIfExists(tmp);
+      }
+      return written;
+    }
+
+    /** Deletes the spilled runs. */
+    @Override
+    public void close() throws IOException {
+      for (Path run : runs) {
+        Files.deleteIfExists(run);
+      }
+      runs.clear();
+      if (Files.isDirectory(spillDir)) {
+        try (Stream<Path> left = Files.list(spillDir)) {
+          if (!left.findAny().isPresent()) {
+            Files.delete(spillDir);
+          }
+        }
+      }
+    }
+  }
+
+  /** The next hash of a sorted run, either spilled or the last one in memory. */
+  private static class Head implements Comparable<Head> {
+    private final DataInputStream in;
+    private final long[] memory;
+    private final long count;
+    private long position = 0;
+    private long value;
+
+    private Head(DataInputStream in, long count) {
+      this.in = in;
+      this.memory = null;
+      this.count = count;
+    }
+
+    private Head(long[] memory, int count) {
+      this.in = null;
+      this.memory = memory;
+      this.count = count;
+    }
+
+    /** Reads the next hash and queues the head, unless the run is exhausted. */
+    private static void advance(Head head, PriorityQueue<Head> heads) throws IOException {
+      if (head.position == head.count) {
+        return;
+      }
+      head.value = head.in != null ? head.in.readLong() : head.memory[(int) head.position];
+      head.position++;
+      heads.add(head);
+    }
+
+    @Override
+    public int compareTo(Head other) {
+      return Long.compare(value, other.value);
+    }
+  }
+
+  /** @return the set of the file, or null if there is none */
+  static CrawledArtifactSet open(Path file) {
+    if (!Files.exists(file)) {
+      return null;
+    }
+    try (InputStream in = new BufferedInputStream(Files.newInputStream(file));
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      DataInputStream data = new DataInputStream(in);
+      final String crawlerVersion = data.readUTF();
+      final long exportedAt = data.readLong();
+      final int size = data.readInt();
+      // the modified utf-8 of writeUTF is prefixed by its length
+      final long offset =
+          2 + crawlerVersion.getBytes(StandardCharsets.UTF_8).length + Long.BYTES + Integer.BYTES;
+      if (channel.size() != offset + (long) size * Long.BYTES) {
+        throw new IOException("Truncated set of size " + size);
+      }
+      // the mapping stays valid after the channel is closed
+      final LongBuffer hashes =
+          channel
+              .map(FileChannel.MapMode.READ_ONLY, offset, (long) size * Long.BYTES)
+              .order(ByteOrder.BIG_ENDIAN)
+              .asLongBuffer();
+      return new CrawledArtifactSet(crawlerVersion, exportedAt, hashes);
+    } catch (IOException | RuntimeException e) {
+      LOGGER.warn("Ignoring unreadable set {}", file, e);
+      return null;
+    }
+  }
+
+  /** The hash of the coordinates, a blank classifier is stored as "null" in the database. */
+  static long hash(String group, String artifact, String version, String classifier) {
+    if (StringUtils.isBlank(classifier)) {
+      classifier = "null";
+    }
+    return Hashing.murmur3_128()
+        .newHasher()
+        .putString(StringUtils.defaultString(group), StandardCharsets.UTF_8)
+        .putByte((byte) 0)
+        .putString(StringUtils.defaultString(artifact), StandardCharsets.UTF_8)
+        .putByte((byte) 0)
+        .putString(StringUtils.defaultString(version), StandardCharsets.UTF_8)
+        .putByte((byte) 0)
+        .putString(classifier, StandardCharsets.UTF_8)
+        .hash()
+        .asLong();
+  }
+
+  public boolean contains(String group, String artifact, String version, String classifier) {
+    final long hash = hash(group, artifact, version, classifier);
+    // binary search on the mapped file, the buffer is shared by the scan threads
+    int low = 0;
+    int high = hashes.limit() - 1;
+    while (low <= high) {
+      final int mid = (low + high) >>> 1;
+      final long value = hashes.get(mid);
+      if (value < hash) {
+        low = mid + 1;
+      } else if (value > hash) {
+        high = mid - 1;
+      } else {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public int size() {
+    return hashes.limit();
+  }
+}
@@ -0,0 +1,368 @@
+package de.upb.maven.ecosystem.indexer.producer;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.util.Bits;
+
+/**
+ * A columnar snapshot of the artifacts of an index, exported once instead of reading the stored
+ * fields of the index on every run. All strings are dictionary-encoded by a single sorted
+ * dictionary, thus, comparing the codes compares the strings. The rows are sorted by group,
+ * artifact, version, classifier and extension, which makes two snapshots diffable by a merge.
+ *
+ * <p>The file is memory-mapped, big-endian, and laid out as: the header (magic, format version,
+ * index timestamp, dictionary size, rows), the dictionary offsets and bytes, an int column per
+ * string, where -1 is null, and the last modified column.
+ */
+public class IndexSnapshot {
+  private static final int MAGIC = 0x4d564e53;
+  private static final int FORMAT_VERSION = 1;
+  private static final int HEADER_BYTES = 4 + 4 + 8 + 4 + 4;
+
+  static final int GROUP = 0;
+  static final int ARTIFACT = 1;
+  static final int VERSION = 2;
+  static final int CLASSIFIER = 3;
+  static final int EXTENSION = 4;
+  static final int PACKAGING = 5;
+  private static final int STRING_COLUMNS = 6;
+  // the columns that identify an artifact, in sort order
+  private static final int KEY_COLUMNS = 5;
+
+  private final long indexTimestamp;
+  private final int rows;
+  private final IntBuffer dictionaryOffsets;
+  private final ByteBuffer dictionary;
+  private final IntBuffer[] columns = new IntBuffer[STRING_COLUMNS];
+  private final LongBuffer lastModified;
+
+  private IndexSnapshot(MappedByteBuffer buffer) throws IOException {
+    if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION) {
+      throw new IOException("Not an index snapshot of version " + FORMAT_VERSION);
+    }
+    indexTimestamp = buffer.getLong(8);
+    final int dictionarySize = buffer.getInt(16);
+    rows = buffer.getInt(20);
+    int position = HEADER_BYTES;
+    dictionaryOffsets = slice(buffer, position, (dictionarySize + 1) * 4).asIntBuffer();
+    position += (dictionarySize + 1) * 4;
+    final int dictionaryBytes = dictionaryOffsets.get(dictionarySize);
+    dictionary = slice(buffer, position, dictionaryBytes);
+    position += pad(dictionaryBytes);
+    for (int column = 0; column < STRING_COLUMNS; column++) {
+      columns[column] = slice(buffer, position, rows * 4).asIntBuffer();
+      position += pad(rows * 4);
+    }
+    lastModified = slice(buffer, position, rows * 8).asLongBuffer();
+  }
+
+  private static ByteBuffer slice(ByteBuffer buffer, int position, int length) {
+    ByteBuffer slice = buffer.duplicate();
+    slice.position(position);
+    slice.limit(position + length);
+    return slice.slice();
+  }
+
+  /** Aligns the columns to 8 bytes. */
+  private static int pad(int length) {
+    return (length + 7) & ~7;
+  }
+
+  public static IndexSnapshot open(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException("Snapshot exceeds 2 GB: " + file);
+      }
+      // the mapping stays valid after the channel is closed
+      return new IndexSnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    }
+  }
+
+  /** Exports the live artifacts of the index, replacing the file atomically. */
+  public static void export(IndexReader reader, long indexTimestamp, Path file) throws IOException {
+    final Builder builder = new Builder();
+    final ArtifactFieldsVisitor ai = new ArtifactFieldsVisitor();
+    for (LeafReaderContext leaf : reader.leaves()) {
+      final LeafReader leafReader = leaf.reader();
+      final Bits liveDocs = leafReader.getLiveDocs();
+      for (int doc = 0; doc < leafReader.maxDoc(); doc++) {
+        if ((liveDocs != null && !liveDocs.get(doc)) || !ai.read(leafReader, doc)) {
+          continue;
+        }
+        builder.add(
+            ai.getGroupId(),
+            ai.getArtifactId(),
+            ai.getVersion(),
+            ai.getClassifier(),
+            ai.getFileExtension(),
+            ai.getPackaging(),
+            ai.getLastModified());
+      }
+    }
+    builder.write(indexTimestamp, file);
+  }
+
+  /** Collects the rows of a snapshot in memory, the strings are encoded once. */
+  static class Builder {
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final List<String> strings = new ArrayList<>();
+    private final int[][] values = new int[STRING_COLUMNS][1 << 10];
+    private long[] modified = new long[1 << 10];
+    private int rows = 0;
+
+    void add(
+        String groupId,
+        String artifactId,
+        String version,
+        String classifier,
+        String fileExtension,
+        String packaging,
+        long lastModified) {
+      if (rows == modified.length) {
+        modified = Arrays.copyOf(modified, rows * 2);
+        for (int column = 0; column < STRING_COLUMNS; column++) {
+          values[column] = Arrays.copyOf(values[column], rows * 2);
+        }
+      }
+      values[GROUP][rows] = code(groupId);
+      values[ARTIFACT][rows] = code(artifactId);
+      values[VERSION][rows] = code(version);
+      values[CLASSIFIER][rows] = code(classifier);
+      values[EXTENSION][rows] = code(fileExtension);
+      values[PACKAGING][rows] = code(packaging);
+      modified[rows] = lastModified;
+      rows++;
+    }
+
+    private int code(String value) {
+      if (value == null) {
+        return -1;
+      }
+      Integer code = codes.get(value);
+      if (code == null) {
+        code = strings.size();
+        codes.put(value, code);
+        strings.add(value);
+      }
+      return code;
+    }
+
+    void write(long indexTimestamp, Path file) throws IOException {
+      // recode by the sorted dictionary
+      final String[] dictionary = strings.toArray(new String[0]);
+      Arrays.sort(dictionary);
+      final int[] recode = new int[dictionary.length];
+      for (int code = 0; code < dictionary.length; code++) {
+        recode[codes.get(dictionary[code])] = code;
+      }
+      for (int column = 0; column < STRING_COLUMNS; column++) {
+        for (int row = 0; row < rows; row++) {
+          final int code = values[column][row];
+          values[column][row] = code < 0 ? code : recode[code];
+        }
+      }
+      final int[] order = new int[rows];
+      for (int row = 0; row < rows; row++) {
+        order[row] = row;
+      }
+      sort(order, new int[rows], 0, rows, values);
+      IndexSnapshot.write(file, indexTimestamp, dictionary, values, modified, order);
+    }
+  }
+
+  private static int compareRows(int[][] values, int left, int right) {
+    for (int column = 0; column < KEY_COLUMNS; column++) {
+      final int cmp = Integer.compare(values[column][left], values[column][right]);
+      if (cmp != 0) {
+        return cmp;
+      }
+    }
+    return 0;
+  }
+
+  /** Merge sort of the row ids, as there is no sort of primitives by a comparator. */
+  private static void sort(int[] rows, int[] buffer, int from, int to, int[][] values) {
+    if (to - from < 2) {
+      return;
+    }
+    final int mid = (from + to) >>> 1;
+    sort(rows, buffer, from, mid, values);
+    sort(rows, buffer, mid, to, values);
+    if (compareRows(values, rows[mid - 1], rows[mid]) <= 0) {
+      return;
+    }
+    System.arraycopy(rows, from, buffer, from, to - from);
+    int left = from;
+    int right = mid;
+    for (int i = from; i < to; i++) {
+      if (right >= to || (left < mid && compareRows(values, buffer[left], buffer[right]) <= 0)) {
+        rows[i] = buffer[left++];
+      } else {
+        rows[i] = buffer[right++];
+      }
+    }
+  }
+
+  private static void write(
+      Path file,
+      long indexTimestamp,
+      String[] dictionary,
+      int[][] values,
+      long[] modified,
+      int[] order)
+      throws IOException {
+    if (file.getParent() != null) {
+      Files.createDirectories(file.getParent());
+    }
+    Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+    try (DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+      out.writeInt(MAGIC);
+      out.writeInt(FORMAT_VERSION);
+      out.writeLong(indexTimestamp);
+      out.writeInt(dictionary.length);
+      out.writeInt(order.length);
+      final byte[][] encoded = new byte[dictionary.length][];
+      int offset = 0;
+      out.writeInt(offset);
+      for (int code = 0; code < dictionary.length; code++) {
+        encoded[code] = dictionary[code].getBytes(StandardCharsets.UTF_8);
+        offset += encoded[code].length;
+        out.writeInt(offset);
+      }
+      for (byte[] bytes : encoded) {
+        out.write(bytes);
+      }
+      padTo(out, offset);
+      for (int column = 0; column < STRING_COLUMNS; column++) {
+        for (int row : order) {
+          out.writeInt(values[column][row]);
+        }
+        padTo(out, order.length * 4);
+      }
+      for (int row : order) {
+        out.writeLong(modified[row]);
+      }
+    }
+    Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private static void padTo(DataOutputStream out, int length) throws IOException {
+    for (int i = length; i < pad(length); i++) {
+      out.writeByte(0);
+    }
+  }
+
+  /**
+   * Merges the sorted snapshots and reports the rows of the newer one that are missing in the older
+   * one, i.e., the artifacts added between the index versions.
+   */
+  public static void diff(IndexSnapshot older, IndexSnapshot newer, IntConsumer added) {
+    int oldRow = 0;
+    for (int row = 0; row < newer.rows; row++) {
+      int cmp = 1;
+      while (oldRow < older.rows && (cmp = compareKeys(older, oldRow, newer, row)) < 0) {
+        oldRow++;
+      }
+      if (oldRow >= older.rows || cmp > 0) {
+        added.accept(row);
+      }
+    }
+  }
+
+  private static int compareKeys(IndexSnapshot left, int leftRow, IndexSnapshot right, int row) {
+    for (int column = 0; column < KEY_COLUMNS; column++) {
+      final String leftValue = left.get(column, leftRow);
+      final String rightValue = right.get(column, row);
+      if (leftValue == null || rightValue == null) {
+        if (leftValue != rightValue) {
+          return leftValue == null ? -1 : 1;
+        }
+        continue;
+      }
+      final int cmp = leftValue.compareTo(rightValue);
+      if (cmp != 0) {
+        return cmp;
+      }
+    }
+    return 0;
+  }
+
+  /** @return the dictionary code of the column of the row, -1 for null */
+  public int code(int column, int row) {
+    return columns[column].get(row);
+  }
+
+  /** @return the string of the dictionary code */
+  public String string(int code) {
+    if (code < 0) {
+      return null;
+    }
+    final int from = dictionaryOffsets.get(code);
+    final byte[] bytes = new byte[dictionaryOffsets.get(code + 1) - from];
+    final ByteBuffer value = dictionary.duplicate();
+    value.position(from);
+    value.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  String get(int column, int row) {
+    return string(code(column, row));
+  }
+
+  public String getGroupId(int row) {
+    return get(GROUP, row);
+  }
+
+  public String getArtifactId(int row) {
+    return get(ARTIFACT, row);
+  }
+
+  public String getVersion(int row) {
+    return get(VERSION, row);
+  }
+
+  public String getClassifier(int row) {
+    return get(CLASSIFIER, row);
+  }
+
+  public String getFileExtension(int row) {
+    return get(EXTENSION, row);
+  }
+
+  public String getPackaging(int row) {
+    return get(PACKAGING, row);
+  }
+
+  public long getLastModified(int row) {
+    return lastModified.get(row);
+  }
+
+  public long getIndexTimestamp() {
+    return indexTimestamp;
+  }
+
+  public int size() {
+    return rows;
+  }
+}
@@ -4,27 +4,48 @@ import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.PropertyAccessor;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Stopwatch;
-import com.rabbitmq.client.AMQP;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import de.upb.maven.ecosystem.ArtifactUtils;
 import de.upb.maven.ecosystem.RabbitMQCollective;
+import de.upb.maven.ecosystem.ShardRouting;
 import de.upb.maven.ecosystem.msg.CustomArtifactInfo;
 import de.upb.maven.ecosystem.persistence.dao.DaoMvnArtifactNode;
 import de.upb.maven.ecosystem.persistence.dao.Neo4JConnector;
+import de.upb.maven.ecosystem.persistence.model.Gavc;
+import de.upb.maven.ecosystem.transport.Lane;
 import java.io.File;
 import java.io.IOException;
-import java.net.URL;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
-import org.apache.lucene.document.Document;
-import org.apache.lucene.index.IndexReader;
-import org.apache.lucene.index.MultiBits;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.Term;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.Weight;
 import org.apache.lucene.util.Bits;
 import org.apache.maven.index.ArtifactInfo;
 import org.apache.maven.index.FlatSearchRequest;
@@ -32,7 +53,6 @@ import org.apache.maven.index.FlatSearchResponse;
 import org.apache.maven.index.Indexer;
 import org.apache.maven.index.MAVEN;
 import org.apache.maven.index.context.IndexCreator;
-import org.apache.maven.index.context.IndexUtils;
 import org.apache.maven.index.context.IndexingContext;
 import org.apache.maven.index.expr.SourcedSearchExpression;
 import org.apache.maven.index.updater.IndexUpdateRequest;
@@ -68,15 +88,21 @@ import org.slf4j.LoggerFactory;
  * the License.
  */
 
-/** Collection of some use cases. */
+/**
+ * Collection of some use cases. Scans the indexes of the configured {@link MavenRepository
+ * repositories} concurrently, every repository by its own thread, and sends their artifacts.
+ */
 public class MavenIndexProducer {
 
   private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(MavenIndexProducer.class);
   private static final String TARGET_LOCAL_REPOSITORY = "target/repository";
+  // the fresh artifacts first, they would wait behind the back pressure of the backfill lane
+  // otherwise
+  private static final List<Lane> SCAN_ORDER = Arrays.asList(Lane.FRESH, Lane.BACKFILL);
+  private static final long DELTA_OVERLAP_MS = TimeUnit.DAYS.toMillis(1);
 
   // ==
   private static final ObjectMapper mapper = new ObjectMapper();
-  private static String MAVEN_REPO_URL;
 
   static {
     mapper.setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY);
@@ -86,14 +112,25 @@ public class MavenIndexProducer {
   private final PlexusContainer plexusContainer;
   private final Indexer indexer;
   private final IndexUpdater indexUpdater;
-  private final Wagon httpWagon;
   private final DaoMvnArtifactNode doaMvnArtifactNode;
-  private IndexingContext centralContext;
+  private final List<MavenRepository> repositories;
+  private final List<RepositoryScan> scans = new ArrayList<>();
+  // number of artifacts checked so far, for logging
+  private final AtomicInteger crawledArtifacts = new AtomicInteger();
+  private final int upToDateCheckBatch = getUpToDateCheckBatchFromEnvironment();
+  // the artifacts of a targeted crawl, null to crawl all
+  private final ArtifactFilter filter = ArtifactFilter.fromEnvironment();
+  private boolean deltaScan = isDeltaScanFromEnvironment();
+  // the artifacts known to be up-to-date, skipped without asking the database
+  private CrawledArtifactSet crawledSet;
+  private final AtomicInteger skippedArtifacts = new AtomicInteger();
+  // artifacts skipped as a repository of higher priority contains them
+  private final AtomicInteger duplicateArtifacts = new AtomicInteger();
 
   public MavenIndexProducer(RabbitMQCollective collective, DaoMvnArtifactNode doaMvnArtifactNode)
       throws PlexusContainerException, ComponentLookupException {
     this.doaMvnArtifactNode = doaMvnArtifactNode;
-    initMavenRepoUrl();
+    this.repositories = MavenRepository.fromEnvironment();
     this.collective = collective;
 
     // here we create Plexus container, the Maven default IoC container
@@ -108,182 +145,225 @@ public class MavenIndexProducer {
     // lookup the indexer components from plexus
     this.indexer = plexusContainer.lookup(Indexer.class);
     this.indexUpdater = plexusContainer.lookup(IndexUpdater.class);
-    // lookup wagon used to remotely fetch index
-    this.httpWagon = plexusContainer.lookup(Wagon.class, "https");
   }
 
-  public void initMavenRepoUrl() {
-    String res = System.getenv("MAVEN_REPO_URL");
+  /**
+   * Directory of the index and the checkpoint, must be kept across deployments to resume the scan.
+   */
+  public static String getIndexDirFromEnvironment() {
+    String res = System.getenv("INDEX_DIR");
     if (res == null || res.isEmpty()) {
-      MAVEN_REPO_URL = "https://repo1.maven.org/maven2/";
-    } else {
-      MAVEN_REPO_URL = res;
+      res = "/tmp/target";
     }
-    LOGGER.info("MAVEN_REPO_URL Index: {}", MAVEN_REPO_URL);
+    return res;
   }
 
-  public void perform(AMQP.BasicProperties props)
-      throws IOException, ComponentLookupException, InterruptedException {
-    // Files where local cache is (if any) and Lucene Index should be located
-    File centralLocalCache = new File("/tmp/target/central-cache");
-    File centralIndexDir = new File("/tmp/target/central-index");
+  public void perform() throws IOException, ComponentLookupException, InterruptedException {
+    final List<RepositoryScan> updated = updateRepositories();
+
+    crawledSet =
+        CrawledArtifactSet.load(
+            CrawledArtifactSet.getSetFile(),
+            doaMvnArtifactNode,
+            Neo4JConnector.getCrawlerVersion(),
+            CrawledArtifactSet.getMaxAgeMs());
+    final ArtifactBatcher batcher =
+        new ArtifactBatcher(
+            collective,
+            ArtifactBatcher.getBatchSizeFromEnvironment(),
+            ArtifactBatcher.getBatchLingerFromEnvironment(),
+            ShardRouting.getShardCount(),
+            ShardRouting.getShardKey());
+    final int scanThreads = getScanThreadsFromEnvironment();
+    LOGGER.info("UP_TO_DATE_CHECK_BATCH: {}", upToDateCheckBatch);
+    // the segment tasks of all repositories share the pool
+    final ForkJoinPool scanPool = new ForkJoinPool(scanThreads);
+    try {
+      runConcurrently("scan", updated, scan -> scan.scan(batcher, scanPool));
+    } finally {
+      scanPool.shutdown();
+      // send the last, partially filled batch
+      batcher.close();
+      LOGGER.info("Maven Crawler Finished");
+    }
+  }
 
-    // Creators we want to use (search for fields it defines)
+  /** Opens the index of every repository and updates the ones that are due. */
+  private List<RepositoryScan> updateRepositories()
+      throws IOException, ComponentLookupException, InterruptedException {
+    // Creators we want to use
     List<IndexCreator> indexers = new ArrayList<>();
     indexers.add(plexusContainer.lookup(IndexCreator.class, "min"));
     indexers.add(plexusContainer.lookup(IndexCreator.class, "jarContent"));
     indexers.add(plexusContainer.lookup(IndexCreator.class, "maven-plugin"));
 
-    // Create context for central repository index
-    centralContext =
-        indexer.createIndexingContext(
-            "central-context",
-            "central",
-            centralLocalCache,
-            centralIndexDir,
-            MAVEN_REPO_URL,
-            null,
-            true,
-            true,
-            indexers);
-
-    LOGGER.info("START with index");
-    // Update the index (incremental update will happen if this is not 1st run and files are not
-    // deleted)
-    // This whole block below should not be executed on every app start, but rather controlled by
-    // some configuration
-    // since this block will always emit at least one HTTP GET. Central indexes are updated once a
-    // week, but
-    // other index sources might have different index publishing frequency.
-    // Preferred frequency is once a week.
-    if (true) {
-      LOGGER.info("Updating Index...");
-      LOGGER.info("This might take a while on first run, so please be patient!");
-      // Create ResourceFetcher implementation to be used with IndexUpdateRequest
-      // Here, we use Wagon based one as shorthand, but all we need is a ResourceFetcher
-      // implementation
-      TransferListener listener =
-          new AbstractTransferListener() {
-            public void transferStarted(TransferEvent transferEvent) {
-              LOGGER.info("Downloading " + transferEvent.getResource().getName());
+    // the scans and their contexts are kept open across the runs of a daemon
+    if (scans.isEmpty()) {
+      for (MavenRepository repository : repositories) {
+        // lookup wagon used to remotely fetch index, a wagon is not thread-safe
+        scans.add(
+            new RepositoryScan(
+                repository, plexusContainer.lookup(Wagon.class, "https"), new ArrayList<>(scans)));
+      }
+    }
+    final List<RepositoryScan> updated = new ArrayList<>(scans);
+    runConcurrently(
+        "update",
+        scans,
+        scan -> {
+          try {
+            scan.update(indexers);
+          } catch (IOException e) {
+            // scan the others anyway, and the local index of this one if there is one
+            LOGGER.error("Failed to update the index of {}", scan.repository, e);
+            if (scan.context == null) {
+              synchronized (updated) {
+                updated.remove(scan);
+              }
             }
+          }
+        });
+    return updated;
+  }
 
-            public void transferProgress(TransferEvent transferEvent, byte[] buffer, int length) {}
+  /**
+   * Updates the indexes, as {@link #perform()} does, and exports an {@link IndexSnapshot} of each.
+   * The snapshots of other repositories than central are prefixed by their id.
+   */
+  public void exportSnapshots(Path file)
+      throws IOException, ComponentLookupException, InterruptedException {
+    for (RepositoryScan scan : updateRepositories()) {
+      scan.exportSnapshot(scan.repository.resolve(file));
+    }
+  }
 
-            public void transferCompleted(TransferEvent transferEvent) {
-              LOGGER.info("Done Downloading");
-            }
-          };
-      ResourceFetcher resourceFetcher =
-          new WagonHelper.WagonFetcher(httpWagon, listener, null, null);
-
-      Date centralContextCurrentTimestamp = centralContext.getTimestamp();
-      IndexUpdateRequest updateRequest = new IndexUpdateRequest(centralContext, resourceFetcher);
-      IndexUpdateResult updateResult = indexUpdater.fetchAndUpdateIndex(updateRequest);
-      if (updateResult.isFullUpdate()) {
-        LOGGER.info("Full update happened!");
-      } else if (updateResult.getTimestamp().equals(centralContextCurrentTimestamp)) {
-        LOGGER.info("No update needed, index is up to date!");
-      } else {
-        LOGGER.info(
-            "Incremental update happened, change covered "
-                + centralContextCurrentTimestamp
-                + " - "
-                + updateResult.getTimestamp()
-                + " period.");
+  /** Closes the indexing contexts, the next run opens them again. */
+  public void close() throws IOException {
+    for (RepositoryScan scan : scans) {
+      if (scan.context != null) {
+        indexer.closeIndexingContext(scan.context, false);
       }
     }
-    LOGGER.info("END");
-    LOGGER.info("Using index");
-    LOGGER.info("===========");
-
-    // ====
-    // Case:
-    // dump all the GAVs
-    // NOTE: will not actually execute do this below, is too long to do (Central is HUGE), but is
-    // here as code
-    // example
-    int crawledArtifacts = 0;
-    final IndexSearcher searcher = centralContext.acquireIndexSearcher();
-    // Creating the ObjectMapper object
+    scans.clear();
+  }
+
+  private interface ScanTask {
+    void run(RepositoryScan scan) throws IOException, InterruptedException;
+  }
 
+  /** Runs the task for every repository on its own thread and rethrows the first failure. */
+  private static void runConcurrently(String name, List<RepositoryScan> scans, ScanTask task)
+      throws IOException, InterruptedException {
+    final ExecutorService executor =
+        Executors.newFixedThreadPool(
+            Math.max(1, scans.size()),
+            new ThreadFactoryBuilder().setNameFormat(name + "-%d").build());
     try {
-      final IndexReader ir = searcher.getIndexReader();
-      Bits liveDocs = MultiBits.getLiveDocs(ir);
-      for (int i = 0; i < ir.maxDoc(); i++) {
-        int docIndex = i;
+      final List<Future<?>> futures = new ArrayList<>();
+      for (RepositoryScan scan : scans) {
+        futures.add(
+            executor.submit(
+                () -> {
+                  Thread.currentThread().setName(name + "-" + scan.repository.getId());
+                  task.run(scan);
+                  return null;
+                }));
+      }
+      Throwable failure = null;
+      for (Future<?> future : futures) {
+        try {
+          future.get();
+        } catch (ExecutionException e) {
+          failure = failure == null ? e.getCause() : failure;
+        }
+      }
+      if (failure instanceof IOException) {
+        throw (IOException) failure;
+      } else if (failure instanceof InterruptedException) {
+        throw (InterruptedException) failure;
+      } else if (failure != null) {
+        throw new IOException("Scanning the repositories failed", failure);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
 
-        if (liveDocs == null || liveDocs.get(docIndex)) {
-          final Document doc = ir.document(docIndex);
-          final ArtifactInfo ai = IndexUtils.constructArtifactInfo(doc, centralContext);
-          // FIXME use the url to determine the file extension
-          String fileExtToUse = getFileExtToUse(ai);
-          if (ai != null && fileExtToUse != null) {
-            crawledArtifacts++;
+  /**
+   * The artifacts modified since the last index update, but at least the ones of the last
+   * FRESH_LANE_MAX_AGE_DAYS, are sent to the fresh lane.
+   *
+   * @return the last modified timestamp in ms from which on artifacts are fresh
+   */
+  private static long getFreshSince(Date previousIndexTimestamp) {
+    String res = System.getenv("FRESH_LANE_MAX_AGE_DAYS");
+    long maxAgeDays = (res == null || res.isEmpty()) ? 7 : Long.parseLong(res);
+    long freshSince = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(maxAgeDays);
+    if (previousIndexTimestamp != null) {
+      freshSince = Math.min(freshSince, previousIndexTimestamp.getTime());
+    }
+    return freshSince;
+  }
 
-            //            if (!(StringUtils.equals("com.fasterxml.jackson.core", ai.getGroupId())
-            //                && StringUtils.equals("jackson-annotations", ai.getArtifactId()))) {
-            //              continue;
-            //            }
+  public static boolean isDeltaScanFromEnvironment() {
+    String res = System.getenv("DELTA_SCAN");
+    if (res == null || res.isEmpty()) {
+      return false;
+    }
+    return Boolean.parseBoolean(res);
+  }
 
-            // convert
-            CustomArtifactInfo customArtifactInfo = new CustomArtifactInfo();
-            customArtifactInfo.setArtifactId(ai.getArtifactId());
-            customArtifactInfo.setGroupId(ai.getGroupId());
-            customArtifactInfo.setArtifactVersion(ai.getVersion());
-            customArtifactInfo.setClassifier(ai.getClassifier());
-            customArtifactInfo.setFileExtension(fileExtToUse);
-            customArtifactInfo.setBundleLicense(ai.getBundleLicense());
-            customArtifactInfo.setLicenseUrl(ai.getBundleDocUrl());
-            customArtifactInfo.setDistribution(ai.getRemoteUrl());
-            customArtifactInfo.setRepoURL(MAVEN_REPO_URL);
-            customArtifactInfo.setPackaging(ai.getPackaging());
+  /**
+   * In delta mode, the documents modified since the watermark of the last complete scan are sent,
+   * with an overlap of {@link #DELTA_OVERLAP_MS}, as an artifact may be indexed some time after it
+   * was modified. Otherwise, or if the crawler version changed, all documents are sent.
+   *
+   * @return the last modified timestamp in ms from which on documents are sent
+   */
+  private long getModifiedSince(ScanWatermark watermark) {
+    if (!deltaScan) {
+      return 0;
+    }
+    if (watermark == null
+        || !StringUtils.equals(watermark.getCrawlerVersion(), Neo4JConnector.getCrawlerVersion())) {
+      LOGGER.info(
+          "No watermark of crawler version {}, scanning all documents",
+          Neo4JConnector.getCrawlerVersion());
+      return 0;
+    }
+    final long modifiedSince = watermark.getIndexTimestamp() - DELTA_OVERLAP_MS;
+    LOGGER.info("Delta scan of the documents modified since {}", new Date(modifiedSince));
+    return modifiedSince;
+  }
 
-            if (ArtifactUtils.ignoreArtifact(customArtifactInfo)) {
-              LOGGER.info(
-                  "Skipping {}:{}:{}-{}",
-                  customArtifactInfo.getGroupId(),
-                  customArtifactInfo.getArtifactId(),
-                  customArtifactInfo.getArtifactVersion(),
-                  customArtifactInfo.getClassifier());
-              continue;
-            }
-            LOGGER.info("Checking Artifact#{}", crawledArtifacts);
-
-            // Converting the Object to JSONString
-            String jsonString = mapper.writeValueAsString(customArtifactInfo);
-
-            // check if artifact up-to-date
-            final URL url = ArtifactUtils.constructURL(customArtifactInfo);
-            Stopwatch stopwatch = Stopwatch.createStarted();
-
-            final boolean l =
-                doaMvnArtifactNode.containsNodeWithVersionGQ(
-                    ai.getGroupId(),
-                    ai.getArtifactId(),
-                    ai.getVersion(),
-                    ai.getClassifier(),
-                    Neo4JConnector.getCrawlerVersion());
-            if (l) {
-              LOGGER.info("Artifact up-to-date: " + url);
-              continue;
-            }
-            LOGGER.info(
-                "Checking DB for artifact took: {} ms", stopwatch.elapsed(TimeUnit.MILLISECONDS));
+  /** Enables the delta mode, as DELTA_SCAN does. */
+  public void setDeltaScan(boolean deltaScan) {
+    this.deltaScan = deltaScan;
+  }
 
-            LOGGER.info("Queueing Artifact#{}", crawledArtifacts);
+  /** Number of artifacts that are checked against the database with a single query. */
+  public static int getUpToDateCheckBatchFromEnvironment() {
+    String res = System.getenv("UP_TO_DATE_CHECK_BATCH");
+    if (res == null || res.isEmpty()) {
+      return 1000;
+    }
+    return Math.max(1, Integer.parseInt(res));
+  }
 
-            collective.enqueue(props, jsonString.getBytes());
-          }
-        }
-      }
-    } finally {
-      LOGGER.info("Maven Crawler Finished");
-      centralContext.releaseIndexSearcher(searcher);
-      LOGGER.info("Released Index");
+  /** Number of index segments that are scanned in parallel, defaults to the number of cores. */
+  public static int getScanThreadsFromEnvironment() {
+    String res = System.getenv("SCAN_THREADS");
+    if (res == null || res.isEmpty()) {
+      return Runtime.getRuntime().availableProcessors();
     }
+    return Math.max(1, Integer.parseInt(res));
   }
 
+  private static Lane laneOf(long lastModified, long freshSince) {
+    return lastModified >= freshSince ? Lane.FRESH : Lane.BACKFILL;
+  }
+
+  /** Searches the index of the first repository. */
   public Collection<ArtifactInfo> search(String groupId, String artifactId) throws IOException {
     Query gidQ = indexer.constructQuery(MAVEN.GROUP_ID, new SourcedSearchExpression(groupId));
     Query aidQ = indexer.constructQuery(MAVEN.ARTIFACT_ID, new SourcedSearchExpression(artifactId));
@@ -293,7 +373,8 @@ public class MavenIndexProducer {
             .add(gidQ, BooleanClause.Occur.MUST)
             .add(aidQ, BooleanClause.Occur.MUST)
             .build();
-    FlatSearchResponse response = indexer.searchFlat(new FlatSearchRequest(bq, centralContext));
+    FlatSearchResponse response =
+        indexer.searchFlat(new FlatSearchRequest(bq, scans.get(0).context));
 
     return response.getResults();
   }
@@ -301,10 +382,7 @@ public class MavenIndexProducer {
   // sieht so aus, als ob je nach index, die file extension nicht immer stimmt
   // z.b. im clojar index haben die  extension pom|jar|...., deswegen nur 80 artifacts
   @Nullable
-  private String getFileExtToUse(ArtifactInfo artifactInfo) {
-    if (artifactInfo == null) {
-      return null;
-    }
+  private String getFileExtToUse(ArtifactFieldsVisitor artifactInfo) {
     if ("sources".equals(artifactInfo.getClassifier())
         || "javadoc".equals(artifactInfo.getClassifier())) {
       return null;
@@ -334,4 +412,422 @@ public class MavenIndexProducer {
     }
     return null;
   }
+
+  /** The index of a repository, updated and scanned by its own thread. */
+  private class RepositoryScan {
+    private final MavenRepository repository;
+    private final Wagon httpWagon;
+    // the repositories of higher priority
+    private final List<RepositoryScan> preceding;
+    private IndexingContext context;
+    private Date previousIndexTimestamp;
+    // in delta mode, only the documents modified since are sent
+    private long modifiedSince = 0;
+    // orders the artifacts of a pass before they are sent, if enabled
+    private ArtifactSorter sorter;
+    // set if a segment failed, to stop the scan of the others
+    private volatile boolean scanFailed = false;
+
+    private RepositoryScan(
+        MavenRepository repository, Wagon httpWagon, List<RepositoryScan> preceding) {
+      this.repository = repository;
+      this.httpWagon = httpWagon;
+      this.preceding = preceding;
+    }
+
+    private void update(List<IndexCreator> indexers) throws IOException {
+      // Files where local cache is (if any) and Lucene Index should be located
+      File localCache = new File(getIndexDirFromEnvironment(), repository.getId() + "-cache");
+      File indexDir = new File(getIndexDirFromEnvironment(), repository.getId() + "-index");
+
+      // Create context for the repository index, unless it is still open from the previous run
+      if (context == null) {
+        context =
+            indexer.createIndexingContext(
+                repository.getId() + "-context",
+                repository.getId(),
+                localCache,
+                indexDir,
+                repository.getUrl(),
+                null,
+                true,
+                true,
+                indexers);
+      }
+
+      // artifacts modified after the previous update are new in this update
+      previousIndexTimestamp = context.getTimestamp();
+      LOGGER.info("START with index of {}", repository);
+      // Update the index (incremental update will happen if this is not 1st run and files are not
+      // deleted)
+      // This block always emits at least one HTTP GET, thus, it is skipped while the local index
+      // is younger than the update interval of the repository. Central indexes are updated once a
+      // week, other index sources might have different index publishing frequency.
+      if (previousIndexTimestamp != null
+          && System.currentTimeMillis() - previousIndexTimestamp.getTime()
+              < repository.getUpdateIntervalMs()) {
+        LOGGER.info("Index of {} is younger than its update interval", repository.getId());
+      } else {
+        LOGGER.info("Updating Index of {}...", repository.getId());
+        LOGGER.info("This might take a while on first run, so please be patient!");
+        // Create ResourceFetcher implementation to be used with IndexUpdateRequest
+        // Here, we use Wagon based one as shorthand, but all we need is a ResourceFetcher
+        // implementation
+        TransferListener listener =
+            new AbstractTransferListener() {
+              public void transferStarted(TransferEvent transferEvent) {
+                LOGGER.info("Downloading " + transferEvent.getResource().getName());
+              }
+
+              public void transferProgress(
+                  TransferEvent transferEvent, byte[] buffer, int length) {}
+
+              public void transferCompleted(TransferEvent transferEvent) {
+                LOGGER.info("Done Downloading");
+              }
+            };
+        ResourceFetcher resourceFetcher =
+            new WagonHelper.WagonFetcher(httpWagon, listener, null, null);
+
+        Date contextCurrentTimestamp = context.getTimestamp();
+        IndexUpdateRequest updateRequest = new IndexUpdateRequest(context, resourceFetcher);
+        IndexUpdateResult updateResult = indexUpdater.fetchAndUpdateIndex(updateRequest);
+        if (updateResult.isFullUpdate()) {
+          LOGGER.info("Full update happened!");
+        } else if (updateResult.getTimestamp().equals(contextCurrentTimestamp)) {
+          LOGGER.info("No update needed, index is up to date!");
+        } else {
+          LOGGER.info(
+              "Incremental update happened, change covered "
+                  + contextCurrentTimestamp
+                  + " - "
+                  + updateResult.getTimestamp()
+                  + " period.");
+        }
+      }
+      LOGGER.info("END");
+    }
+
+    /** @return true if the index contains the artifact of the UINFO */
+    private boolean contains(String uinfo) throws IOException {
+      if (context == null) {
+        return false;
+      }
+      final IndexSearcher searcher = context.acquireIndexSearcher();
+      try {
+        return searcher.count(new TermQuery(new Term(ArtifactInfo.UINFO, uinfo))) > 0;
+      } finally {
+        context.releaseIndexSearcher(searcher);
+      }
+    }
+
+    private void exportSnapshot(Path file) throws IOException {
+      final long indexTimestamp =
+          context.getTimestamp() == null ? 0 : context.getTimestamp().getTime();
+      final IndexSearcher searcher = context.acquireIndexSearcher();
+      try {
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        IndexSnapshot.export(searcher.getIndexReader(), indexTimestamp, file);
+        LOGGER.info("Exported the index of {} to {} in {}", repository, file, stopwatch);
+      } finally {
+        context.releaseIndexSearcher(searcher);
+      }
+    }
+
+    private boolean isContainedByPreceding(String uinfo) throws IOException {
+      for (RepositoryScan scan : preceding) {
+        if (scan.contains(uinfo)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private void scan(ArtifactBatcher batcher, ForkJoinPool scanPool)
+        throws IOException, InterruptedException {
+      LOGGER.info("Using index of {}", repository);
+      LOGGER.info("===========");
+
+      // ====
+      // Case:
+      // dump all the GAVs
+      // NOTE: will not actually execute do this below, is too long to do (Central is HUGE), but is
+      // here as code
+      // example
+      Path checkpointFile = ScanCheckpoint.getCheckpointFile();
+      if (filter != null) {
+        // keep the checkpoint of the complete scan
+        checkpointFile = checkpointFile.resolveSibling("filtered-" + checkpointFile.getFileName());
+      }
+      checkpointFile = repository.resolve(checkpointFile);
+      final String filterSpec = filter == null ? null : filter.toString();
+      final long indexTimestamp =
+          context.getTimestamp() == null ? 0 : context.getTimestamp().getTime();
+      ScanCheckpoint checkpoint = ScanCheckpoint.load(checkpointFile);
+      if (checkpoint != null
+          && (checkpoint.getIndexTimestamp() != indexTimestamp
+              || !StringUtils.equals(checkpoint.getFilter(), filterSpec))) {
+        LOGGER.info("Index or filter changed since the checkpoint, scanning from the start");
+        checkpoint = null;
+      }
+      final long freshSince =
+          checkpoint != null ? checkpoint.getFreshSince() : getFreshSince(previousIndexTimestamp);
+      LOGGER.info("Artifacts modified since {} are fresh", new Date(freshSince));
+      final Path watermarkFile = repository.resolve(ScanWatermark.getWatermarkFile());
+      modifiedSince = getModifiedSince(ScanWatermark.load(watermarkFile));
+      final IndexSearcher searcher = context.acquireIndexSearcher();
+
+      if (ArtifactSorter.isOrderedEmissionFromEnvironment()) {
+        LOGGER.info("Sending the artifacts of a pass ordered by group, artifact and version");
+        sorter =
+            new ArtifactSorter(
+                ArtifactSorter.getBufferSizeFromEnvironment(),
+                repository.resolve(Paths.get(getIndexDirFromEnvironment(), "sort-spill")));
+      }
+      ScanCheckpoint stoppedAt = null;
+      try {
+        Weight selection = null;
+        final Query query = filter == null ? null : filter.toQuery(indexer);
+        if (query != null) {
+          selection =
+              searcher.createWeight(searcher.rewrite(query), ScoreMode.COMPLETE_NO_SCORES, 1);
+          LOGGER.info("Filter {} selects {} documents", filter, searcher.count(query));
+        }
+        final List<LeafReaderContext> leaves = searcher.getIndexReader().leaves();
+        LOGGER.info("Scanning {} segments", leaves.size());
+        int pass = 0;
+        int[] fromDocs = new int[leaves.size()];
+        if (checkpoint != null && checkpoint.getDocs().length == leaves.size()) {
+          LOGGER.info("Resuming {} pass of the checkpoint", checkpoint.getLane());
+          pass = SCAN_ORDER.indexOf(checkpoint.getLane());
+          fromDocs = checkpoint.getDocs();
+        }
+        for (; pass < SCAN_ORDER.size(); pass++) {
+          final Lane lane = SCAN_ORDER.get(pass);
+          final int[] next = emit(leaves, selection, scanPool, batcher, lane, freshSince, fromDocs);
+          if (sorter != null
+              && !collective.isDraining()
+              && !sorter.sendTo(ai -> batcher.add(ai, lane), collective::isDraining)) {
+            LOGGER.info("Stopped sending the ordered {} artifacts", lane);
+          }
+          if (collective.isDraining()) {
+            // the ordered artifacts are only sent at the end of the pass, repeat it
+            stoppedAt =
+                new ScanCheckpoint(
+                    indexTimestamp, freshSince, lane, sorter != null ? fromDocs : next, filterSpec);
+            break;
+          }
+          batcher.flush();
+          LOGGER.info(
+              "Queued {} artifacts, skipped {} crawled and {} duplicate ones so far",
+              lane,
+              skippedArtifacts.get(),
+              duplicateArtifacts.get());
+          fromDocs = new int[leaves.size()];
+        }
+      } finally {
+        if (sorter != null) {
+          sorter.close();
+        }
+        // send the partially filled batches
+        batcher.flush();
+        context.releaseIndexSearcher(searcher);
+        LOGGER.info("Released Index of {}", repository.getId());
+      }
+
+      if (stoppedAt == null) {
+        ScanCheckpoint.delete(checkpointFile);
+        // the next delta only skips what is safe with the transport
+        if (filter != null) {
+          LOGGER.info("Targeted crawl of {} complete, the watermark is not advanced", filter);
+        } else if (collective.awaitDelivered(RabbitMQCollective.getDrainTimeoutMs())) {
+          new ScanWatermark(indexTimestamp, Neo4JConnector.getCrawlerVersion()).save(watermarkFile);
+        } else {
+          LOGGER.warn("Not all artifacts were delivered, the watermark is not advanced");
+        }
+      } else if (collective.awaitDelivered(RabbitMQCollective.getDrainTimeoutMs())) {
+        // only skip the documents whose artifacts are safe with the transport
+        stoppedAt.save(checkpointFile);
+        LOGGER.info("Drained, continue the {} pass on restart", stoppedAt.getLane());
+      } else {
+        LOGGER.warn("Drained, but not all artifacts were delivered, no checkpoint written");
+      }
+    }
+
+    /**
+     * Sends the artifacts of the index that belong to the lane. Every segment is scanned by its own
+     * task of the scan pool, all tasks feed the same batcher. Stops early if the collective drains.
+     *
+     * @param selection the documents selected by the filter, null to check all documents
+     * @param fromDocs the first document to check per segment
+     * @return the next document to check per segment, its max doc if the segment is complete
+     */
+    private int[] emit(
+        List<LeafReaderContext> leaves,
+        Weight selection,
+        ForkJoinPool scanPool,
+        ArtifactBatcher batcher,
+        Lane lane,
+        long freshSince,
+        int[] fromDocs)
+        throws IOException, InterruptedException {
+      final int[] next = new int[leaves.size()];
+      final List<ForkJoinTask<Void>> tasks = new ArrayList<>();
+      for (int i = 0; i < leaves.size(); i++) {
+        final int leaf = i;
+        tasks.add(
+            scanPool.submit(
+                () -> {
+                  next[leaf] =
+                      emitLeaf(
+                          leaves.get(leaf), selection, batcher, lane, freshSince, fromDocs[leaf]);
+                  return null;
+                }));
+      }
+      Throwable failure = null;
+      for (ForkJoinTask<Void> task : tasks) {
+        try {
+          task.get();
+        } catch (ExecutionException e) {
+          // stop the other segments, too
+          scanFailed = true;
+          failure = failure == null ? e.getCause() : failure;
+        }
+      }
+      scanFailed = false;
+      if (failure instanceof IOException) {
+        throw (IOException) failure;
+      } else if (failure instanceof InterruptedException) {
+        throw (InterruptedException) failure;
+      } else if (failure != null) {
+        throw new IOException("Scanning the index failed", failure);
+      }
+      return next;
+    }
+
+    /**
+     * Sends the artifacts of the segment that belong to the lane and that are not up-to-date in the
+     * database. The artifacts are checked against the database in batches of {@link
+     * #getUpToDateCheckBatchFromEnvironment()}, a batch is checked completely before the scan
+     * stops, so that the returned document stays a valid checkpoint. The selected documents are
+     * iterated in document order, too.
+     *
+     * @param fromDoc the first document of the segment to check
+     * @return the next document of the segment to check, its max doc if the segment is complete
+     */
+    private int emitLeaf(
+        LeafReaderContext leaf,
+        Weight selection,
+        ArtifactBatcher batcher,
+        Lane lane,
+        long freshSince,
+        int fromDoc)
+        throws IOException, InterruptedException {
+      final LeafReader reader = leaf.reader();
+      DocIdSetIterator docs = DocIdSetIterator.all(reader.maxDoc());
+      if (selection != null) {
+        final Scorer scorer = selection.scorer(leaf);
+        docs = scorer == null ? DocIdSetIterator.empty() : scorer.iterator();
+      }
+      final Bits liveDocs = reader.getLiveDocs();
+      final List<CustomArtifactInfo> candidates = new ArrayList<>(upToDateCheckBatch);
+      final ArtifactFieldsVisitor ai = new ArtifactFieldsVisitor();
+      for (int docIndex = docs.advance(fromDoc);
+          docIndex != DocIdSetIterator.NO_MORE_DOCS;
+          docIndex = docs.nextDoc()) {
+        if (collective.isDraining() || scanFailed) {
+          emitOutdated(candidates, batcher, lane);
+          return docIndex;
+        }
+
+        if (liveDocs == null || liveDocs.get(docIndex)) {
+          if (!ai.read(reader, docIndex)) {
+            continue;
+          }
+          // FIXME use the url to determine the file extension
+          String fileExtToUse = getFileExtToUse(ai);
+          if (fileExtToUse != null
+              && ai.getLastModified() >= modifiedSince
+              && (filter == null || filter.acceptsLastModified(ai.getLastModified()))
+              && laneOf(ai.getLastModified(), freshSince) == lane) {
+            crawledArtifacts.incrementAndGet();
+
+            // convert
+            CustomArtifactInfo customArtifactInfo = new CustomArtifactInfo();
+            customArtifactInfo.setArtifactId(ai.getArtifactId());
+            customArtifactInfo.setGroupId(ai.getGroupId());
+            customArtifactInfo.setArtifactVersion(ai.getVersion());
+            customArtifactInfo.setClassifier(ai.getClassifier());
+            customArtifactInfo.setFileExtension(fileExtToUse);
+            customArtifactInfo.setRepoURL(repository.getUrl());
+            customArtifactInfo.setPackaging(ai.getPackaging());
+
+            if (ArtifactUtils.ignoreArtifact(customArtifactInfo)) {
+              LOGGER.info(
+                  "Skipping {}:{}:{}-{}",
+                  customArtifactInfo.getGroupId(),
+                  customArtifactInfo.getArtifactId(),
+                  customArtifactInfo.getArtifactVersion(),
+                  customArtifactInfo.getClassifier());
+              continue;
+            }
+            if (crawledSet.contains(
+                ai.getGroupId(), ai.getArtifactId(), ai.getVersion(), ai.getClassifier())) {
+              skippedArtifacts.incrementAndGet();
+              continue;
+            }
+            if (isContainedByPreceding(ai.getUinfo())) {
+              duplicateArtifacts.incrementAndGet();
+              continue;
+            }
+            candidates.add(customArtifactInfo);
+            if (candidates.size() >= upToDateCheckBatch) {
+              emitOutdated(candidates, batcher, lane);
+            }
+          }
+        }
+      }
+      emitOutdated(candidates, batcher, lane);
+      return reader.maxDoc();
+    }
+
+    /** Checks the candidates with a single query and sends the ones that are not up-to-date. */
+    private void emitOutdated(
+        List<CustomArtifactInfo> candidates, ArtifactBatcher batcher, Lane lane)
+        throws IOException, InterruptedException {
+      if (candidates.isEmpty()) {
+        return;
+      }
+      final List<Gavc> gavcs = new ArrayList<>(candidates.size());
+      for (CustomArtifactInfo candidate : candidates) {
+        gavcs.add(
+            new Gavc(
+                candidate.getGroupId(),
+                candidate.getArtifactId(),
+                candidate.getArtifactVersion(),
+                candidate.getClassifier()));
+      }
+      Stopwatch stopwatch = Stopwatch.createStarted();
+      final Set<Gavc> outdated =
+          Collections.newSetFromMap(new IdentityHashMap<>(candidates.size()));
+      outdated.addAll(
+          doaMvnArtifactNode.findMissingOrStale(gavcs, Neo4JConnector.getCrawlerVersion()));
+      LOGGER.info(
+          "Checking DB for {} artifacts took: {} ms, {} not up-to-date",
+          candidates.size(),
+          stopwatch.elapsed(TimeUnit.MILLISECONDS),
+          outdated.size());
+      for (int i = 0; i < candidates.size(); i++) {
+        if (!outdated.contains(gavcs.get(i))) {
+          continue;
+        }
+        if (sorter != null) {
+          sorter.add(candidates.get(i));
+        } else {
+          batcher.add(candidates.get(i), lane);
+        }
+      }
+      candidates.clear();
+    }
+  }
 }
@@ -0,0 +1,100 @@
+package de.upb.maven.ecosystem.indexer.producer;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A repository whose index is scanned by the producer. The repositories are configured by
+ * MAVEN_REPOSITORIES as a comma-separated list of {@code id=url}, optionally followed by {@code
+ * @hours}, the minimal age of the local index before the remote index is fetched again. Without
+ * it, only Maven Central, or the repository of MAVEN_REPO_URL, is scanned. The order is the
+ * priority, an artifact contained in the index of a former repository is only sent for that one.
+ */
+public class MavenRepository {
+  private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(MavenRepository.class);
+
+  public static final String CENTRAL_ID = "central";
+
+  private final String id;
+  private final String url;
+  private final long updateIntervalMs;
+
+  public MavenRepository(String id, String url, long updateIntervalMs) {
+    this.id = id;
+    this.url = url.endsWith("/") ? url : url + "/";
+    this.updateIntervalMs = updateIntervalMs;
+  }
+
+  public static List<MavenRepository> fromEnvironment() {
+    String res = System.getenv("MAVEN_REPOSITORIES");
+    if (res == null || res.isEmpty()) {
+      String url = System.getenv("MAVEN_REPO_URL");
+      if (url == null || url.isEmpty()) {
+        url = "https://repo1.maven.org/maven2/";
+      }
+      LOGGER.info("MAVEN_REPO_URL Index: {}", url);
+      return Collections.singletonList(new MavenRepository(CENTRAL_ID, url, 0));
+    }
+    final List<MavenRepository> repositories = parse(res);
+    LOGGER.info("MAVEN_REPOSITORIES: {}", repositories);
+    return repositories;
+  }
+
+  static List<MavenRepository> parse(String repositories) {
+    final List<MavenRepository> parsed = new ArrayList<>();
+    for (String repository : repositories.split(",")) {
+      repository = repository.trim();
+      if (repository.isEmpty()) {
+        continue;
+      }
+      final int eq = repository.indexOf('=');
+      if (eq <= 0) {
+        throw new IllegalArgumentException("Expected id=url[@hours], got " + repository);
+      }
+      String url = repository.substring(eq + 1).trim();
+      long updateIntervalMs = 0;
+      final int at = url.lastIndexOf('@');
+      if (at > 0 && url.indexOf('/', at) < 0) {
+        updateIntervalMs = TimeUnit.HOURS.toMillis(Long.parseLong(url.substring(at + 1).trim()));
+        url = url.substring(0, at).trim();
+      }
+      parsed.add(new MavenRepository(repository.substring(0, eq).trim(), url, updateIntervalMs));
+    }
+    if (parsed.isEmpty()) {
+      throw new IllegalArgumentException("No repository configured");
+    }
+    return parsed;
+  }
+
+  /**
+   * The file of this repository that corresponds to the given file of Maven Central. The files of
+   * central keep their names, the ones of other repositories are prefixed by their id.
+   */
+  public Path resolve(Path centralFile) {
+    if (CENTRAL_ID.equals(id)) {
+      return centralFile;
+    }
+    return centralFile.resolveSibling(id + "-" + centralFile.getFileName());
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public String getUrl() {
+    return url;
+  }
+
+  public long getUpdateIntervalMs() {
+    return updateIntervalMs;
+  }
+
+  @Override
+  public String toString() {
+    return id + "=" + url;
+  }
+}
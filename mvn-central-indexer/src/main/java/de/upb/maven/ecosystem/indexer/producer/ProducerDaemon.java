@@ -0,0 +1,167 @@
+package de.upb.maven.ecosystem.indexer.producer;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import de.upb.maven.ecosystem.RabbitMQCollective;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Date;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs the producer on a schedule instead of once per start. The Plexus container and the indexing
+ * contexts stay open across the runs, every run updates the indexes that are due and scans the
+ * documents modified since the previous complete scan. The times of the last and the next run are
+ * logged and written to {@link #getStatusFile()}.
+ */
+public class ProducerDaemon {
+  private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(ProducerDaemon.class);
+
+  private static final long POLL_DRAINING_MS = 1000;
+
+  private final MavenIndexProducer producer;
+  private final RabbitMQCollective collective;
+  private final long intervalMs;
+  private final Path statusFile;
+
+  private volatile long lastRunStart = 0;
+  private volatile long lastRunEnd = 0;
+  private volatile boolean lastRunSucceeded = false;
+  private volatile long nextRun = 0;
+
+  /** @param intervalMs the delay between the end of a run and the start of the next one */
+  public ProducerDaemon(
+      MavenIndexProducer producer,
+      RabbitMQCollective collective,
+      long intervalMs,
+      Path statusFile) {
+    this.producer = producer;
+    this.collective = collective;
+    this.intervalMs = intervalMs;
+    this.statusFile = statusFile;
+  }
+
+  public static boolean isDaemonFromEnvironment() {
+    String res = System.getenv("PRODUCER_DAEMON");
+    if (res == null || res.isEmpty()) {
+      return false;
+    }
+    return Boolean.parseBoolean(res);
+  }
+
+  public static long getIntervalMsFromEnvironment() {
+    String res = System.getenv("PRODUCER_INTERVAL_MINUTES");
+    if (res == null || res.isEmpty()) {
+      return TimeUnit.HOURS.toMillis(6);
+    }
+    return TimeUnit.MINUTES.toMillis(Long.parseLong(res));
+  }
+
+  public static Path getStatusFile() {
+    String res = System.getenv("PRODUCER_STATUS_FILE");
+    if (res == null || res.isEmpty()) {
+      return Paths.get(MavenIndexProducer.getIndexDirFromEnvironment(), "producer.status");
+    }
+    return Paths.get(res);
+  }
+
+  /** Runs the producer in delta mode until the collective drains. */
+  public void run() throws IOException, InterruptedException {
+    producer.setDeltaScan(true);
+    final ScheduledExecutorService scheduler =
+        Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("producer-daemon").build());
+    LOGGER.info("Running the producer every {} min", TimeUnit.MILLISECONDS.toMinutes(intervalMs));
+    try {
+      nextRun = System.currentTimeMillis();
+      scheduler.scheduleWithFixedDelay(this::runOnce, 0, intervalMs, TimeUnit.MILLISECONDS);
+      while (!collective.isDraining()) {
+        Thread.sleep(POLL_DRAINING_MS);
+      }
+    } finally {
+      // a running scan stops by itself once the collective drains
+      scheduler.shutdown();
+      if (!scheduler.awaitTermination(
+          RabbitMQCollective.getDrainTimeoutMs(), TimeUnit.MILLISECONDS)) {
+        LOGGER.warn("The run of the producer did not stop in time");
+      }
+      producer.close();
+    }
+  }
+
+  private void runOnce() {
+    if (collective.isDraining()) {
+      return;
+    }
+    lastRunStart = System.currentTimeMillis();
+    boolean succeeded = false;
+    try {
+      producer.perform();
+      succeeded = true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      LOGGER.warn("Run of the producer interrupted");
+    } catch (Exception e) {
+      // keep the schedule, the next run may succeed
+      LOGGER.error("Run of the producer failed", e);
+    } finally {
+      lastRunEnd = System.currentTimeMillis();
+      lastRunSucceeded = succeeded;
+      nextRun = lastRunEnd + intervalMs;
+      LOGGER.info(
+          "Run of the producer {} in {} s, next run at {}",
+          succeeded ? "succeeded" : "failed",
+          TimeUnit.MILLISECONDS.toSeconds(lastRunEnd - lastRunStart),
+          new Date(nextRun));
+      saveStatus();
+    }
+  }
+
+  /** Replaces the status file atomically. */
+  private void saveStatus() {
+    Properties properties = new Properties();
+    properties.setProperty("lastRunStart", new Date(lastRunStart).toString());
+    properties.setProperty("lastRunEnd", new Date(lastRunEnd).toString());
+    properties.setProperty("lastRunSucceeded", Boolean.toString(lastRunSucceeded));
+    properties.setProperty("nextRun", new Date(nextRun).toString());
+    try {
+      if (statusFile.getParent() != null) {
+        Files.createDirectories(statusFile.getParent());
+      }
+      Path tmp = statusFile.resolveSibling(statusFile.getFileName() + ".tmp");
+      try (OutputStream out = Files.newOutputStream(tmp)) {
+        properties.store(out, "runs of the producer daemon");
+      }
+      Files.move(
+          tmp, statusFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      LOGGER.warn("Failed to write the status {}", statusFile, e);
+    }
+  }
+
+  /** @return the start of the last run in ms, 0 before the first run */
+  public long getLastRunStart() {
+    return lastRunStart;
+  }
+
+  /** @return the end of the last run in ms, 0 before the first run ended */
+  public long getLastRunEnd() {
+    return lastRunEnd;
+  }
+
+  public boolean isLastRunSucceeded() {
+    return lastRunSucceeded;
+  }
+
+  /** @return the start of the next run in ms */
+  public long getNextRun() {
+    return nextRun;
+  }
+}
@@ -0,0 +1,123 @@
+package de.upb.maven.ecosystem.indexer.producer;
+
+import de.upb.maven.ecosystem.transport.Lane;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.stream.Collectors;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Position of the producer in the scan of the index, the next document per segment, as the segments
+ * are scanned in parallel. It is written once the producer drained, all documents before it have
+ * been delivered. The lucene document ids are only stable as long as the index does not change,
+ * thus, the checkpoint only applies to the index of the same timestamp. The documents of a targeted
+ * crawl are the ones selected by its filter, thus, it only applies to the same filter, too.
+ */
+public class ScanCheckpoint {
+  private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(ScanCheckpoint.class);
+
+  private final long indexTimestamp;
+  private final long freshSince;
+  private final Lane lane;
+  private final int[] docs;
+  private final String filter;
+
+  /**
+   * @param indexTimestamp the timestamp of the scanned index
+   * @param freshSince the lane classification of the scan, to continue it unchanged
+   * @param lane the pass of the scan
+   * @param docs the next document of the pass per segment
+   * @param filter the {@link ArtifactFilter} of the scan, null if all documents are scanned
+   */
+  public ScanCheckpoint(
+      long indexTimestamp, long freshSince, Lane lane, int[] docs, String filter) {
+    this.indexTimestamp = indexTimestamp;
+    this.freshSince = freshSince;
+    this.lane = lane;
+    this.docs = docs;
+    this.filter = filter;
+  }
+
+  public static Path getCheckpointFile() {
+    String res = System.getenv("PRODUCER_CHECKPOINT_FILE");
+    if (res == null || res.isEmpty()) {
+      return Paths.get(MavenIndexProducer.getIndexDirFromEnvironment(), "producer.checkpoint");
+    }
+    return Paths.get(res);
+  }
+
+  /** @return the checkpoint, or null if there is none */
+  public static ScanCheckpoint load(Path file) {
+    if (!Files.exists(file)) {
+      return null;
+    }
+    Properties properties = new Properties();
+    try (InputStream in = Files.newInputStream(file)) {
+      properties.load(in);
+      return new ScanCheckpoint(
+          Long.parseLong(properties.getProperty("indexTimestamp")),
+          Long.parseLong(properties.getProperty("freshSince")),
+          Lane.valueOf(properties.getProperty("lane")),
+          Arrays.stream(properties.getProperty("docs").split(","))
+              .filter(doc -> !doc.isEmpty())
+              .mapToInt(Integer::parseInt)
+              .toArray(),
+          properties.getProperty("filter"));
+    } catch (IOException | RuntimeException e) {
+      LOGGER.warn("Ignoring unreadable checkpoint {}", file, e);
+      return null;
+    }
+  }
+
+  /** Replaces the checkpoint atomically, a crash leaves either the old or the new one. */
+  public void save(Path file) throws IOException {
+    Properties properties = new Properties();
+    properties.setProperty("indexTimestamp", Long.toString(indexTimestamp));
+    properties.setProperty("freshSince", Long.toString(freshSince));
+    properties.setProperty("lane", lane.name());
+    properties.setProperty(
+        "docs", Arrays.stream(docs).mapToObj(Integer::toString).collect(Collectors.joining(",")));
+    if (filter != null) {
+      properties.setProperty("filter", filter);
+    }
+    if (file.getParent() != null) {
+      Files.createDirectories(file.getParent());
+    }
+    Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+    try (OutputStream out = Files.newOutputStream(tmp)) {
+      properties.store(out, "position of the producer in the index scan");
+    }
+    Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  public static void delete(Path file) throws IOException {
+    Files.deleteIfExists(file);
+  }
+
+  public long getIndexTimestamp() {
+    return indexTimestamp;
+  }
+
+  public long getFreshSince() {
+    return freshSince;
+  }
+
+  public Lane getLane() {
+    return lane;
+  }
+
+  public int[] getDocs() {
+    return docs;
+  }
+
+  public String getFilter() {
+    return filter;
+  }
+}
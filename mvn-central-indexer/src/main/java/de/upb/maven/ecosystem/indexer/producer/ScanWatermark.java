@@ -0,0 +1,76 @@
+package de.upb.maven.ecosystem.indexer.producer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The index timestamp of the last complete scan, whose artifacts have all been delivered. In delta
+ * mode, the next scan only sends the documents modified after it. The crawler version of the scan
+ * is kept, as a new crawler version has to crawl all artifacts again.
+ */
+public class ScanWatermark {
+  private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(ScanWatermark.class);
+
+  private final long indexTimestamp;
+  private final String crawlerVersion;
+
+  public ScanWatermark(long indexTimestamp, String crawlerVersion) {
+    this.indexTimestamp = indexTimestamp;
+    this.crawlerVersion = crawlerVersion;
+  }
+
+  public static Path getWatermarkFile() {
+    String res = System.getenv("PRODUCER_WATERMARK_FILE");
+    if (res == null || res.isEmpty()) {
+      return Paths.get(MavenIndexProducer.getIndexDirFromEnvironment(), "producer.watermark");
+    }
+    return Paths.get(res);
+  }
+
+  /** @return the watermark, or null if there is none */
+  public static ScanWatermark load(Path file) {
+    if (!Files.exists(file)) {
+      return null;
+    }
+    Properties properties = new Properties();
+    try (InputStream in = Files.newInputStream(file)) {
+      properties.load(in);
+      return new ScanWatermark(
+          Long.parseLong(properties.getProperty("indexTimestamp")),
+          properties.getProperty("crawlerVersion"));
+    } catch (IOException | RuntimeException e) {
+      LOGGER.warn("Ignoring unreadable watermark {}", file, e);
+      return null;
+    }
+  }
+
+  /** Replaces the watermark atomically. */
+  public void save(Path file) throws IOException {
+    Properties properties = new Properties();
+    properties.setProperty("indexTimestamp", Long.toString(indexTimestamp));
+    properties.setProperty("crawlerVersion", crawlerVersion);
+    if (file.getParent() != null) {
+      Files.createDirectories(file.getParent());
+    }
+    Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+    try (OutputStream out = Files.newOutputStream(tmp)) {
+      properties.store(out, "index timestamp of the last complete scan");
+    }
+    Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  public long getIndexTimestamp() {
+    return indexTimestamp;
+  }
+
+  public String getCrawlerVersion() {
+    return crawlerVersion;
+  }
+}
@@ -0,0 +1,32 @@
+package de.upb.maven.ecosystem.indexer.producer;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ArtifactFilterTest {
+
+  @Test
+  public void lastModifiedRange() {
+    ArtifactFilter filter =
+        ArtifactFilter.parse(
+            "groupId=org.springframework*, modifiedFrom=2020-01-01,modifiedTo=2020-01-02");
+    assertFalse(filter.acceptsLastModified(1577836799999L));
+    assertTrue(filter.acceptsLastModified(1577836800000L));
+    assertTrue(filter.acceptsLastModified(1577923199999L));
+    assertFalse(filter.acceptsLastModified(1577923200000L));
+
+    assertTrue(ArtifactFilter.parse("packaging=jar|pom").acceptsLastModified(0L));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void unknownKey() {
+    ArtifactFilter.parse("version=1.0");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void missingValue() {
+    ArtifactFilter.parse("groupId=");
+  }
+}
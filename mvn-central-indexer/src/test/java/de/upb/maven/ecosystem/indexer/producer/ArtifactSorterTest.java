@@ -0,0 +1,59 @@
+package de.upb.maven.ecosystem.indexer.producer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import de.upb.maven.ecosystem.msg.CustomArtifactInfo;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ArtifactSorterTest {
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private static CustomArtifactInfo artifact(String groupId, String artifactId, String version) {
+    CustomArtifactInfo artifactInfo = new CustomArtifactInfo();
+    artifactInfo.setGroupId(groupId);
+    artifactInfo.setArtifactId(artifactId);
+    artifactInfo.setArtifactVersion(version);
+    return artifactInfo;
+  }
+
+  @Test
+  public void mergesSpilledRuns() throws IOException, InterruptedException {
+    Path spillDir = folder.getRoot().toPath().resolve("spill");
+    try (ArtifactSorter sorter = new ArtifactSorter(3, spillDir)) {
+      for (String gav :
+          Arrays.asList("b:x:2", "a:y:1", "c:x:1", "a:x:2", "b:x:1", "a:x:1", "c:a:1")) {
+        String[] parts = gav.split(":");
+        sorter.add(artifact(parts[0], parts[1], parts[2]));
+      }
+
+      List<String> sent = new ArrayList<>();
+      assertTrue(
+          sorter.sendTo(
+              ai ->
+                  sent.add(
+                      ai.getGroupId() + ":" + ai.getArtifactId() + ":" + ai.getArtifactVersion()),
+              () -> false));
+      assertEquals(
+          Arrays.asList("a:x:1", "a:x:2", "a:y:1", "b:x:1", "b:x:2", "c:a:1", "c:x:1"), sent);
+      try (Stream<Path> runs = Files.list(spillDir)) {
+        assertEquals(0, runs.count());
+      }
+
+      // starts over after sending
+      sorter.add(artifact("d", "x", "1"));
+      assertFalse(sorter.sendTo(ai -> {}, () -> true));
+    }
+  }
+}
@@ -0,0 +1,68 @@
+package de.upb.maven.ecosystem.indexer.producer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CrawledArtifactSetTest {
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void exportAndOpen() throws IOException {
+    Path file = folder.getRoot().toPath().resolve("crawled.set");
+    assertNull(CrawledArtifactSet.open(file));
+
+    // runs of 64 hashes, thus, the export is spilled and merged
+    try (CrawledArtifactSet.Export export =
+        new CrawledArtifactSet.Export(file, "0.5.0", 1234L, 64)) {
+      for (int i = 0; i < 500; i++) {
+        export.add(CrawledArtifactSet.hash("org.example", "lib", "1." + i, null), true);
+      }
+      assertEquals(500, export.commit());
+    }
+    assertFalse(Files.exists(file.resolveSibling("crawled.set.runs")));
+    CrawledArtifactSet set = CrawledArtifactSet.open(file);
+    assertEquals(500, set.size());
+    assertTrue(set.contains("org.example", "lib", "1.0", null));
+    assertTrue(set.contains("org.example", "lib", "1.499", "null"));
+    assertTrue(set.contains("org.example", "lib", "1.42", ""));
+    assertFalse(set.contains("org.example", "lib", "1.500", null));
+    assertFalse(set.contains("org.example", "lib", "1.0", "sources"));
+  }
+
+  @Test
+  public void duplicateAndStaleNodesAreNotCrawled() throws IOException {
+    Path file = folder.getRoot().toPath().resolve("crawled.set");
+    try (CrawledArtifactSet.Export export =
+        new CrawledArtifactSet.Export(file, "0.5.0", 1234L, 4)) {
+      export.add(CrawledArtifactSet.hash("org.example", "single", "1.0", null), true);
+      // two up-to-date nodes of the same coordinates, in different runs
+      export.add(CrawledArtifactSet.hash("org.example", "twice", "1.0", null), true);
+      for (int i = 0; i < 5; i++) {
+        export.add(CrawledArtifactSet.hash("org.example", "other", "1." + i, null), true);
+      }
+      export.add(CrawledArtifactSet.hash("org.example", "twice", "1.0", "null"), true);
+      // an up-to-date and a stale node of the same coordinates
+      export.add(CrawledArtifactSet.hash("org.example", "mixed", "1.0", null), true);
+      export.add(CrawledArtifactSet.hash("org.example", "mixed", "1.0", null), false);
+      export.add(CrawledArtifactSet.hash("org.example", "stale", "1.0", null), false);
+      assertEquals(6, export.commit());
+    }
+    CrawledArtifactSet set = CrawledArtifactSet.open(file);
+    assertEquals(6, set.size());
+    assertTrue(set.contains("org.example", "single", "1.0", null));
+    assertTrue(set.contains("org.example", "other", "1.4", null));
+    assertFalse(set.contains("org.example", "twice", "1.0", null));
+    assertFalse(set.contains("org.example", "mixed", "1.0", null));
+    assertFalse(set.contains("org.example", "stale", "1.0", null));
+  }
+}
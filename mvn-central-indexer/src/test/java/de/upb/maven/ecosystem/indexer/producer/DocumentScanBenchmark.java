@@ -0,0 +1,75 @@
+package de.upb.maven.ecosystem.indexer.producer;
+
+import com.google.common.base.Stopwatch;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.maven.index.ArtifactInfo;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares the docs/sec of loading whole index documents, as before, with the {@link
+ * ArtifactFieldsVisitor}. Requires the central index of a previous producer run in INDEX_DIR.
+ */
+@Ignore
+public class DocumentScanBenchmark {
+  private static final Logger LOGGER = LoggerFactory.getLogger(DocumentScanBenchmark.class);
+
+  private static final int ROUNDS = 3;
+
+  @Test
+  public void benchmark() throws IOException {
+    try (FSDirectory directory =
+            FSDirectory.open(
+                Paths.get(MavenIndexProducer.getIndexDirFromEnvironment(), "central-index"));
+        DirectoryReader reader = DirectoryReader.open(directory)) {
+      for (int round = 0; round < ROUNDS; round++) {
+        LOGGER.info("[Benchmark] whole documents: {} docs/sec", scanDocuments(reader));
+        LOGGER.info("[Benchmark] fields visitor: {} docs/sec", scanVisitor(reader));
+      }
+    }
+  }
+
+  private static String scanDocuments(DirectoryReader reader) throws IOException {
+    Stopwatch stopwatch = Stopwatch.createStarted();
+    long artifacts = 0;
+    for (LeafReaderContext leaf : reader.leaves()) {
+      final LeafReader leafReader = leaf.reader();
+      for (int doc = 0; doc < leafReader.maxDoc(); doc++) {
+        final Document document = leafReader.document(doc);
+        if (document.get(ArtifactInfo.UINFO) != null && document.get(ArtifactInfo.INFO) != null) {
+          artifacts++;
+        }
+      }
+    }
+    return rate(reader.maxDoc(), artifacts, stopwatch);
+  }
+
+  private static String scanVisitor(DirectoryReader reader) throws IOException {
+    Stopwatch stopwatch = Stopwatch.createStarted();
+    final ArtifactFieldsVisitor visitor = new ArtifactFieldsVisitor();
+    long artifacts = 0;
+    for (LeafReaderContext leaf : reader.leaves()) {
+      final LeafReader leafReader = leaf.reader();
+      for (int doc = 0; doc < leafReader.maxDoc(); doc++) {
+        if (visitor.read(leafReader, doc)) {
+          artifacts++;
+        }
+      }
+    }
+    return rate(reader.maxDoc(), artifacts, stopwatch);
+  }
+
+  private static String rate(int docs, long artifacts, Stopwatch stopwatch) {
+    final long elapsed = Math.max(1, stopwatch.elapsed(TimeUnit.MILLISECONDS));
+    return String.format("%.1f (%d artifacts)", docs * 1000.0 / elapsed, artifacts);
+  }
+}
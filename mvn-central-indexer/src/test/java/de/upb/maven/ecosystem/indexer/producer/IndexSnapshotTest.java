@@ -0,0 +1,78 @@
+package de.upb.maven.ecosystem.indexer.producer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class IndexSnapshotTest {
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void writeAndOpen() throws IOException {
+    Path file = folder.getRoot().toPath().resolve("index.snapshot");
+    IndexSnapshot.Builder builder = new IndexSnapshot.Builder();
+    builder.add("org.example", "lib", "1.1", null, "jar", "jar", 2L);
+    builder.add("org.example", "lib", "1.0", "sources", "jar", null, 3L);
+    builder.add("com.example", "app", "2.0", null, "pom", "pom", 4L);
+    builder.add("org.example", "lib", "1.0", null, "jar", "jar", 1L);
+    builder.write(42L, file);
+
+    IndexSnapshot snapshot = IndexSnapshot.open(file);
+    assertEquals(42L, snapshot.getIndexTimestamp());
+    assertEquals(4, snapshot.size());
+    // sorted by group, artifact, version and classifier, null first
+    assertEquals("com.example", snapshot.getGroupId(0));
+    assertEquals("pom", snapshot.getPackaging(0));
+    assertEquals(4L, snapshot.getLastModified(0));
+    assertEquals("1.0", snapshot.getVersion(1));
+    assertNull(snapshot.getClassifier(1));
+    assertEquals(1L, snapshot.getLastModified(1));
+    assertEquals("sources", snapshot.getClassifier(2));
+    assertNull(snapshot.getPackaging(2));
+    assertEquals("1.1", snapshot.getVersion(3));
+    assertEquals("jar", snapshot.getFileExtension(3));
+  }
+
+  @Test
+  public void diff() throws IOException {
+    Path olderFile = folder.getRoot().toPath().resolve("older.snapshot");
+    IndexSnapshot.Builder older = new IndexSnapshot.Builder();
+    older.add("org.example", "lib", "1.0", null, "jar", "jar", 1L);
+    older.add("org.example", "lib", "1.1", null, "jar", "jar", 2L);
+    older.write(1L, olderFile);
+
+    Path newerFile = folder.getRoot().toPath().resolve("newer.snapshot");
+    IndexSnapshot.Builder newer = new IndexSnapshot.Builder();
+    newer.add("org.example", "lib", "1.0", null, "jar", "jar", 1L);
+    newer.add("org.example", "lib", "1.0", "sources", "jar", null, 3L);
+    newer.add("org.example", "lib", "1.1", null, "jar", "jar", 2L);
+    newer.add("org.example", "lib", "1.2", null, "jar", "jar", 4L);
+    newer.add("a.example", "app", "1.0", null, "pom", "pom", 5L);
+    newer.write(2L, newerFile);
+
+    IndexSnapshot newerSnapshot = IndexSnapshot.open(newerFile);
+    List<String> added = new ArrayList<>();
+    IndexSnapshot.diff(
+        IndexSnapshot.open(olderFile),
+        newerSnapshot,
+        row ->
+            added.add(
+                newerSnapshot.getGroupId(row)
+                    + ":"
+                    + newerSnapshot.getVersion(row)
+                    + ":"
+                    + newerSnapshot.getClassifier(row)));
+    assertEquals(3, added.size());
+    assertEquals("a.example:1.0:null", added.get(0));
+    assertEquals("org.example:1.0:sources", added.get(1));
+    assertEquals("org.example:1.2:null", added.get(2));
+  }
+}
@@ -22,6 +22,6 @@ public class MavenIndexProducerTest {
             "bolt://heap-snapshots.cs.upb.de:7687", AuthTokens.basic("neo4j", "PdBwGaQecqX69M28"));
     DaoMvnArtifactNode daoMvnArtifactNode = new DoaMvnArtifactNodeImpl(driver);
     MavenIndexProducer mavenIndexProducer = new MavenIndexProducer(null, daoMvnArtifactNode);
-    mavenIndexProducer.perform(null);
+    mavenIndexProducer.perform();
   }
 }
@@ -0,0 +1,32 @@
+package de.upb.maven.ecosystem.indexer.producer;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class MavenRepositoryTest {
+
+  @Test
+  public void parse() {
+    List<MavenRepository> repositories =
+        MavenRepository.parse(
+            "central=https://repo1.maven.org/maven2/, internal=https://user@nexus.example.org/maven@24");
+    assertEquals(2, repositories.size());
+    assertEquals("central", repositories.get(0).getId());
+    assertEquals("https://repo1.maven.org/maven2/", repositories.get(0).getUrl());
+    assertEquals(0, repositories.get(0).getUpdateIntervalMs());
+    assertEquals("internal", repositories.get(1).getId());
+    assertEquals("https://user@nexus.example.org/maven/", repositories.get(1).getUrl());
+    assertEquals(TimeUnit.HOURS.toMillis(24), repositories.get(1).getUpdateIntervalMs());
+
+    assertEquals(
+        Paths.get("/data/producer.checkpoint"),
+        repositories.get(0).resolve(Paths.get("/data/producer.checkpoint")));
+    assertEquals(
+        Paths.get("/data/internal-producer.checkpoint"),
+        repositories.get(1).resolve(Paths.get("/data/producer.checkpoint")));
+  }
+}
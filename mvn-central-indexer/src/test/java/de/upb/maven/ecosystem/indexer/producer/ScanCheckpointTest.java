@@ -0,0 +1,37 @@
+package de.upb.maven.ecosystem.indexer.producer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import de.upb.maven.ecosystem.transport.Lane;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ScanCheckpointTest {
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void saveAndLoad() throws IOException {
+    Path file = folder.getRoot().toPath().resolve("checkpoint/producer.checkpoint");
+    assertNull(ScanCheckpoint.load(file));
+
+    new ScanCheckpoint(1234L, 1000L, Lane.BACKFILL, new int[] {42, 0, 7}, null).save(file);
+    ScanCheckpoint checkpoint = ScanCheckpoint.load(file);
+    assertEquals(1234L, checkpoint.getIndexTimestamp());
+    assertEquals(1000L, checkpoint.getFreshSince());
+    assertEquals(Lane.BACKFILL, checkpoint.getLane());
+    assertEquals("[42, 0, 7]", Arrays.toString(checkpoint.getDocs()));
+    assertNull(checkpoint.getFilter());
+
+    new ScanCheckpoint(1234L, 1000L, Lane.FRESH, new int[] {1}, "groupId=org.example*").save(file);
+    assertEquals("groupId=org.example*", ScanCheckpoint.load(file).getFilter());
+
+    ScanCheckpoint.delete(file);
+    assertNull(ScanCheckpoint.load(file));
+  }
+}
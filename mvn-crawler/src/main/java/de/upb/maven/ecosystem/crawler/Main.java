@@ -3,15 +3,20 @@ package de.upb.maven.ecosystem.crawler;
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.PropertyAccessor;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.rabbitmq.client.AMQP;
-import com.rabbitmq.client.Delivery;
 import de.upb.maven.ecosystem.AbstractCrawler;
+import de.upb.maven.ecosystem.ArtifactUtils;
+import de.upb.maven.ecosystem.ErrorClass;
 import de.upb.maven.ecosystem.QueueNames;
 import de.upb.maven.ecosystem.crawler.process.ArtifactManager;
+import de.upb.maven.ecosystem.msg.ArtifactBatch;
+import de.upb.maven.ecosystem.msg.ArtifactBatchResult;
+import de.upb.maven.ecosystem.msg.ArtifactResult;
 import de.upb.maven.ecosystem.msg.CustomArtifactInfo;
 import de.upb.maven.ecosystem.persistence.dao.DoaMvnArtifactNodeImpl;
 import de.upb.maven.ecosystem.persistence.dao.Neo4JConnector;
 import de.upb.maven.ecosystem.persistence.redis.RedisWriter;
+import de.upb.maven.ecosystem.transport.Message;
+import de.upb.maven.ecosystem.transport.Transport;
 import java.io.IOException;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.LoggerFactory;
@@ -19,6 +24,8 @@ import org.slf4j.LoggerFactory;
 public class Main extends AbstractCrawler {
   private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(Main.class);
 
+  private static final String REPLAY_DEAD_LETTERS = "replay-dead-letters";
+
   private static final ObjectMapper mapper = new ObjectMapper();
   private RedisWriter useRedis = null;
 
@@ -27,8 +34,24 @@ public class Main extends AbstractCrawler {
     mapper.setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY);
   }
 
+  /**
+   * Runs a worker that consumes the given transport, e.g., in the same JVM as the producer.
+   *
+   * @param transport
+   */
+  public Main(Transport transport) {
+    super(QueueNames.MVN_INDEX_QUEUE_NAME, true, transport);
+    mapper.setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY);
+  }
+
+  /** @param args "replay-dead-letters [limit]" to move the dead letters back to the queue */
   public static void main(String[] args) throws Exception {
     Main main = new Main();
+    if (args.length > 0 && REPLAY_DEAD_LETTERS.equals(args[0])) {
+      int limit = args.length > 1 ? Integer.parseInt(args[1]) : Integer.MAX_VALUE;
+      LOGGER.info("Replayed {} dead letters", main.replayDeadLetters(limit));
+      System.exit(0);
+    }
     main.run();
   }
 
@@ -49,22 +72,83 @@ public class Main extends AbstractCrawler {
   }
 
   @Override
-  protected void doWorkerJob(Delivery delivery) throws IOException {
+  protected Message doWorkerJob(Message message) throws IOException {
+    if (ArtifactBatch.MESSAGE_TYPE.equals(message.getType())) {
+      return processBatch(message, message.getPayload(ArtifactBatch.class));
+    }
+
+    CustomArtifactInfo artifactInfo = message.getPayload(CustomArtifactInfo.class);
+    LOGGER.info("[Worker] Received Request");
+    ArtifactManager manager =
+        new ArtifactManager(new DoaMvnArtifactNodeImpl(Neo4JConnector.getDriver()));
+    handleFailure(message, artifactInfo, process(manager, artifactInfo, 0));
+    return null;
+  }
 
-    CustomArtifactInfo artifactInfo =
-        mapper.readValue(delivery.getBody(), CustomArtifactInfo.class);
+  private ArtifactResult process(
+      ArtifactManager manager, CustomArtifactInfo artifactInfo, int crawledArtifacts) {
     try {
-      LOGGER.info("[Worker] Received Request");
-      ArtifactManager manager =
-          new ArtifactManager(new DoaMvnArtifactNodeImpl(Neo4JConnector.getDriver()));
-      manager.process(artifactInfo, 0);
+      return manager.process(artifactInfo, crawledArtifacts);
     } catch (Exception e) {
       LOGGER.error("[Worker] Failed Crawling  with", e);
+      return new ArtifactResult(
+          ArtifactUtils.toGav(artifactInfo), false, e.getMessage(), ErrorClass.classify(e));
+    }
+  }
+
+  /** Retries the failed artifact on its own, also if it was part of a batch. */
+  private void handleFailure(
+      Message received, CustomArtifactInfo artifactInfo, ArtifactResult result) throws IOException {
+    if (result.isSuccess()) {
+      return;
+    }
+    final Message failed =
+        Message.of(null, artifactInfo, received.getShard(), received.getLane())
+            .withAttempt(received.getAttempt());
+    try {
+      retryOrDeadLetter(failed, result.getErrorClass(), result.getMessage());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while retrying " + result.getGav(), e);
+    }
+  }
+
+  /**
+   * Crawls the artifacts of the batch one after another.
+   *
+   * @return the {@link ArtifactBatchResult} with the outcome per artifact
+   * @throws IOException if a failed artifact could be neither retried nor dead-lettered, after the
+   *     other artifacts of the batch have been crawled, thus, the batch is redelivered
+   */
+  private Message processBatch(Message message, ArtifactBatch batch) throws IOException {
+    LOGGER.info("[Worker] Received Batch of {} artifacts", batch.getArtifacts().size());
+    ArtifactManager manager =
+        new ArtifactManager(new DoaMvnArtifactNodeImpl(Neo4JConnector.getDriver()));
+    ArtifactBatchResult batchResult = new ArtifactBatchResult();
+    IOException retryFailure = null;
+    int crawledArtifacts = 0;
+    for (CustomArtifactInfo artifactInfo : batch.getArtifacts()) {
+      ArtifactResult result = process(manager, artifactInfo, crawledArtifacts++);
+      try {
+        handleFailure(message, artifactInfo, result);
+      } catch (IOException e) {
+        LOGGER.error("[Worker] Failed to retry {}", result.getGav(), e);
+        if (retryFailure == null) {
+          retryFailure = e;
+        } else {
+          retryFailure.addSuppressed(e);
+        }
+      }
+      batchResult.getResults().add(result);
+    }
+    if (retryFailure != null) {
+      throw retryFailure;
     }
+    return Message.of(ArtifactBatchResult.MESSAGE_TYPE, batchResult);
   }
 
   @Override
-  protected void doProducerJob(AMQP.BasicProperties props) {
+  protected void doProducerJob() {
     LOGGER.info("No Producer registered");
   }
 
@@ -8,6 +8,7 @@ import java.nio.file.FileSystem;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
@@ -22,6 +23,10 @@ import org.slf4j.LoggerFactory;
 public class PomFileUtil {
   private static final Logger LOGGER = LoggerFactory.getLogger(PomFileUtil.class);
   private static final Set<String> ARCHIVE_TYPES = Sets.newHashSet("zip", "war", "jar");
+  // most poms are smaller, a larger one is read into a grown copy
+  private static final int POM_BUFFER_SIZE = 64 * 1024;
+  private static final ThreadLocal<byte[]> POM_BUFFER =
+      ThreadLocal.withInitial(() -> new byte[POM_BUFFER_SIZE]);
 
   public PomFileUtil() {}
 
@@ -41,6 +46,24 @@ public class PomFileUtil {
     }
   }
 
+  /**
+   * Reads the stream, e.g., a pom.xml downloaded over HTTP, into a byte array. Small files are read
+   * into a reused buffer of the thread, thus, only the result is allocated.
+   */
+  public static byte[] readFully(InputStream in) throws IOException {
+    byte[] buffer = POM_BUFFER.get();
+    int length = 0;
+    int read;
+    while ((read = in.read(buffer, length, buffer.length - length)) >= 0) {
+      length += read;
+      if (length == buffer.length) {
+        // do not grow the pooled buffer, a large pom is the exception
+        buffer = Arrays.copyOf(buffer, buffer.length * 2);
+      }
+    }
+    return Arrays.copyOf(buffer, length);
+  }
+
   public static synchronized Path acquireZipFs(Path path, URI uri) throws IOException {
     String[] zipFile = uri.toString().split("!");
 
@@ -2,15 +2,14 @@ package de.upb.maven.ecosystem.crawler.process;
 
 import com.google.common.base.Stopwatch;
 import de.upb.maven.ecosystem.ArtifactUtils;
+import de.upb.maven.ecosystem.ErrorClass;
+import de.upb.maven.ecosystem.msg.ArtifactResult;
 import de.upb.maven.ecosystem.msg.CustomArtifactInfo;
 import de.upb.maven.ecosystem.persistence.dao.DaoMvnArtifactNode;
 import de.upb.maven.ecosystem.persistence.dao.Neo4JConnector;
 import de.upb.maven.ecosystem.persistence.model.MvnArtifactNode;
 import de.upb.maven.ecosystem.persistence.redis.RedisWriter;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
 import java.util.Collection;
 import java.util.Objects;
 import java.util.concurrent.TimeUnit;
@@ -33,7 +32,13 @@ public class ArtifactManager {
     }
   }
 
-  public void process(CustomArtifactInfo ai, int crawledArtifacts) throws IOException {
+  /**
+   * Crawls the artifact and writes the resolved nodes to the database.
+   *
+   * @return the outcome, failures are reported with their {@link ErrorClass} and not thrown
+   * @throws IOException if the artifact has no repository url
+   */
+  public ArtifactResult process(CustomArtifactInfo ai, int crawledArtifacts) throws IOException {
     if (StringUtils.isBlank(ai.getRepoURL())) {
       throw new IOException("No Base URL is given");
     }
@@ -46,7 +51,7 @@ public class ArtifactManager {
           ai.getArtifactId(),
           ai.getArtifactVersion(),
           ai.getClassifier());
-      return;
+      return new ArtifactResult(ArtifactUtils.toGav(ai), true, null);
     }
     // the producer should check if the artifact is in the db
     boolean existsInDb =
@@ -62,7 +67,7 @@ public class ArtifactManager {
           ai.getGroupId(),
           ai.getArtifactId(),
           ai.getArtifactVersion());
-      return;
+      return new ArtifactResult(ArtifactUtils.toGav(ai), true, null);
     }
 
     LOGGER.debug("[Stats] DB lookup took: {}", stopwatch.elapsed(TimeUnit.MILLISECONDS));
@@ -98,38 +103,12 @@ public class ArtifactManager {
         LOGGER.warn("No nodes have been resolved");
       }
     } catch (Exception ex) {
-      stopwatch.reset();
+      final ErrorClass errorClass = ErrorClass.classify(ex);
       LOGGER.error(
-          "Crawling of artifact:  {} , failed with ",
-          ai.getGroupId()
-              + ":"
-              + ai.getArtifactId()
-              + ":"
-              + ai.getArtifactVersion()
-              + "-"
-              + ai.getClassifier(),
-          ex);
-      try {
-        String log =
-            ai.getGroupId()
-                + ":"
-                + ai.getArtifactId()
-                + ":"
-                + ai.getArtifactVersion()
-                + "-"
-                + ai.getClassifier()
-                + " -- "
-                + ex.getMessage()
-                + "\n";
-        Files.write(
-            Paths.get("failed_artifacts.txt"),
-            log.getBytes(),
-            StandardOpenOption.CREATE,
-            StandardOpenOption.APPEND);
-      } catch (IOException e) {
-        LOGGER.error("Could not write failed_artifacts file", e);
-      }
-      LOGGER.info("[Stats] Writing to files took: {}", stopwatch.elapsed(TimeUnit.MILLISECONDS));
+          "Crawling of artifact:  {} , failed ({}) with ", ArtifactUtils.toGav(ai), errorClass, ex);
+      // the worker retries or dead-letters the artifact
+      return new ArtifactResult(ArtifactUtils.toGav(ai), false, ex.getMessage(), errorClass);
     }
+    return new ArtifactResult(ArtifactUtils.toGav(ai), true, null);
   }
 }
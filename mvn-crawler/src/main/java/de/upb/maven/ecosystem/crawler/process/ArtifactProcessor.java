@@ -3,7 +3,6 @@ package de.upb.maven.ecosystem.crawler.process;
 import com.google.common.base.Optional;
 import com.google.common.base.Stopwatch;
 import de.upb.maven.ecosystem.ArtifactUtils;
-import de.upb.maven.ecosystem.crawler.PomFileUtil;
 import de.upb.maven.ecosystem.msg.CustomArtifactInfo;
 import de.upb.maven.ecosystem.persistence.dao.DaoMvnArtifactNode;
 import de.upb.maven.ecosystem.persistence.dao.Neo4JConnector;
@@ -13,8 +12,6 @@ import de.upb.maven.ecosystem.persistence.model.MvnArtifactNode;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.net.URL;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -25,27 +22,23 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import org.apache.commons.beanutils.BeanUtils;
-import org.apache.commons.io.FileUtils;
-import org.apache.commons.lang3.RandomStringUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.maven.model.Dependency;
 import org.apache.maven.model.Model;
 import org.apache.maven.model.Parent;
 import org.apache.maven.model.Profile;
-import org.apache.maven.project.MavenProject;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.LoggerFactory;
 
 public class ArtifactProcessor {
 
   private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(ArtifactProcessor.class);
-  private static final int CONNECT_TIMEOUT = 5 * 60000;
-  private static final int READ_TIMEOUT = 5 * 60000;
   private static final int RESOLVE_NODE = 0;
   private static final int RESOLVE_PROPERTIES = 1;
   private static final int RESOLVE_IMPORTS = 2;
@@ -57,9 +50,11 @@ public class ArtifactProcessor {
   // worklist 4 - (for dependencies --> that do not came out of the db --> resolve all their direct
   // dependencies)
   private static final int RESOLVE_DIRECT_DEPENDENCIES = 3;
-  private final Path TEMP_LOCATION;
   private final DaoMvnArtifactNode daoMvnArtifactNode;
   private final String repoUrl;
+  private final PomModelCache pomModelCache;
+  private final RepositoryClient repositoryClient;
+  private final boolean prefetch;
   private final Deque<MvnArtifactNode>[] worklist = new Deque[4];
 
   private final List<MvnArtifactNode> writeToDBList = new ArrayList<>();
@@ -68,12 +63,29 @@ public class ArtifactProcessor {
 
   private final HashMap<String, Model> nodeToModel = new HashMap<>();
   private final HashMap<String, Integer> internalResolvingLevelHashMap = new HashMap<>();
+  // the poms whose fetch has been started ahead of the worklists
+  private final HashSet<String> prefetched = new HashSet<>();
   private final Pattern PROPERTY_PATTERN = Pattern.compile("(\\$\\{[^\\}]+\\})");
 
-  public ArtifactProcessor(DaoMvnArtifactNode doaArtifactNode, String repoUrl) throws IOException {
-    TEMP_LOCATION = Files.createTempDirectory(RandomStringUtils.randomAlphabetic(10));
+  public ArtifactProcessor(DaoMvnArtifactNode doaArtifactNode, String repoUrl) {
+    this(doaArtifactNode, repoUrl, PomModelCache.getInstance());
+  }
+
+  public ArtifactProcessor(
+      DaoMvnArtifactNode doaArtifactNode, String repoUrl, PomModelCache pomModelCache) {
+    this(doaArtifactNode, repoUrl, pomModelCache, RepositoryClient.getInstance());
+  }
+
+  public ArtifactProcessor(
+      DaoMvnArtifactNode doaArtifactNode,
+      String repoUrl,
+      PomModelCache pomModelCache,
+      RepositoryClient repositoryClient) {
     this.daoMvnArtifactNode = doaArtifactNode;
     this.repoUrl = repoUrl;
+    this.pomModelCache = pomModelCache;
+    this.repositoryClient = repositoryClient;
+    this.prefetch = isPrefetchFromEnvironment();
     // FIFO queue
     worklist[RESOLVE_NODE] = new ArrayDeque<>();
     // LIFO
@@ -82,36 +94,95 @@ public class ArtifactProcessor {
     worklist[RESOLVE_DIRECT_DEPENDENCIES] = new ArrayDeque<>();
   }
 
+  public static boolean isPrefetchFromEnvironment() {
+    String res = System.getenv("POM_PREFETCH");
+    if (res == null || res.isEmpty()) {
+      return true;
+    }
+    return Boolean.parseBoolean(res);
+  }
+
   private Model nodeToModelGetOrFetchModel(MvnArtifactNode mvnArtifactNode) {
     Model model = this.nodeToModel.get(genId(mvnArtifactNode));
     if (model == null) {
-
-      // Derive pom.xml from info
-      CustomArtifactInfo pomInfo = new CustomArtifactInfo();
-      pomInfo.setClassifier(mvnArtifactNode.getClassifier());
-      pomInfo.setGroupId(mvnArtifactNode.getGroup());
-      pomInfo.setArtifactId(mvnArtifactNode.getArtifact());
-      pomInfo.setArtifactVersion(mvnArtifactNode.getVersion());
-      pomInfo.setRepoURL(this.repoUrl);
-      pomInfo.setFileExtension("pom");
-      Path pomLocation = null;
       try {
-        pomLocation = downloadFilePlainURL(pomInfo, TEMP_LOCATION);
-
-        final MavenProject mavenProject = PomFileUtil.readPom(pomLocation);
-
-        if (mavenProject != null && mavenProject.getModel() != null) {
-          model = mavenProject.getModel();
+        model = fetchModel(mvnArtifactNode);
+        if (model != null) {
           // add to the hashset - to get profile information later (easily)
           nodeToModel.put(genId(mvnArtifactNode), model);
         }
       } catch (IOException exception) {
-        LOGGER.error("Failed to resolve model for {}", pomInfo);
+        LOGGER.error("Failed to resolve model for {}", genId(mvnArtifactNode));
       }
     }
     return model;
   }
 
+  /**
+   * Looks up the model of the pom.xml in the cache shared by all processors, the pom.xml is only
+   * downloaded if it is not cached.
+   *
+   * @return the model, or null if the pom.xml is not a valid model
+   */
+  @Nullable
+  private Model fetchModel(MvnArtifactNode mvnArtifactNode) throws IOException {
+    return fetchModel(
+        mvnArtifactNode.getGroup(),
+        mvnArtifactNode.getArtifact(),
+        mvnArtifactNode.getVersion(),
+        mvnArtifactNode.getClassifier());
+  }
+
+  @Nullable
+  private Model fetchModel(String groupId, String artifactId, String version, String classifier)
+      throws IOException {
+    // Derive pom.xml from info
+    CustomArtifactInfo pomInfo = new CustomArtifactInfo();
+    pomInfo.setClassifier(classifier);
+    pomInfo.setGroupId(groupId);
+    pomInfo.setArtifactId(artifactId);
+    pomInfo.setArtifactVersion(version);
+    pomInfo.setRepoURL(this.repoUrl);
+    pomInfo.setFileExtension("pom");
+    return pomModelCache.get(groupId, artifactId, version, classifier, () -> downloadPom(pomInfo));
+  }
+
+  /**
+   * Starts to fetch and parse the pom.xml of a parent or an import in the threads of the repository
+   * client, as soon as its coordinates are known. The worklists are still processed in their order,
+   * their lookups in the cache wait for the running fetch instead of starting another one. Failed
+   * prefetches are not cached, the lookup of the worklist fetches the pom.xml again and reports the
+   * failure.
+   */
+  private void prefetch(MvnArtifactNode mvnArtifactNode) {
+    if (!prefetch
+        || mvnArtifactNode.getResolvingLevel() == MvnArtifactNode.ResolvingLevel.FULL
+        || StringUtils.isBlank(mvnArtifactNode.getGroup())
+        || StringUtils.isBlank(mvnArtifactNode.getArtifact())
+        || StringUtils.isBlank(mvnArtifactNode.getVersion())
+        || !isFullyResolved(mvnArtifactNode)) {
+      return;
+    }
+    // the node is modified by the worklists, copy the coordinates
+    final String groupId = mvnArtifactNode.getGroup();
+    final String artifactId = mvnArtifactNode.getArtifact();
+    final String version = mvnArtifactNode.getVersion();
+    final String classifier = mvnArtifactNode.getClassifier();
+    if (!prefetched.add(genId(groupId, artifactId, version, classifier, "pom"))
+        || pomModelCache.isCached(groupId, artifactId, version, classifier)) {
+      return;
+    }
+    CompletableFuture.runAsync(
+        () -> {
+          try {
+            fetchModel(groupId, artifactId, version, classifier);
+          } catch (IOException e) {
+            LOGGER.debug("Prefetching {}:{}:{} failed", groupId, artifactId, version, e);
+          }
+        },
+        repositoryClient.getExecutor());
+  }
+
   private void addtoWorklist(MvnArtifactNode node, int resolvinglevel) {
     String id = genId(node);
     final Integer currentResolvingLevel = internalResolvingLevelHashMap.getOrDefault(id, -1);
@@ -351,6 +422,7 @@ public class ArtifactProcessor {
             .filter(x -> x.getScope() == DependencyScope.IMPORT)
             .collect(Collectors.toList());
     // these nodes must be resolved now, after the properties level
+    importNodes.stream().map(DependencyRelation::getTgtNode).forEach(this::prefetch);
     importNodes.stream()
         .map(DependencyRelation::getTgtNode)
         .forEach(x -> addtoWorklist(x, RESOLVE_NODE));
@@ -697,23 +769,10 @@ public class ArtifactProcessor {
    * @param mvnArtifactNode the maven artifact to resolve fully
    */
   public void addInfoFromPom(MvnArtifactNode mvnArtifactNode) throws IOException {
-
-    // Derive pom.xml from info
-    CustomArtifactInfo pomInfo = new CustomArtifactInfo();
-    pomInfo.setClassifier(mvnArtifactNode.getClassifier());
-    pomInfo.setGroupId(mvnArtifactNode.getGroup());
-    pomInfo.setArtifactId(mvnArtifactNode.getArtifact());
-    pomInfo.setArtifactVersion(mvnArtifactNode.getVersion());
-    pomInfo.setRepoURL(this.repoUrl);
-    pomInfo.setFileExtension("pom");
-    Path pomLocation = null;
     try {
-      pomLocation = downloadFilePlainURL(pomInfo, TEMP_LOCATION);
+      final Model model = fetchModel(mvnArtifactNode);
 
-      final MavenProject mavenProject = PomFileUtil.readPom(pomLocation);
-
-      if (mavenProject != null && mavenProject.getModel() != null) {
-        final Model model = mavenProject.getModel();
+      if (model != null) {
         // add to the hashset - to get profile information later (easily)
         nodeToModel.put(genId(mvnArtifactNode), model);
 
@@ -729,6 +788,7 @@ public class ArtifactProcessor {
                   "null",
                   "pom");
           mvnArtifactNode.setParent(Optional.of(parent));
+          prefetch(parent);
         }
 
         HashMap<String, String> newPros = new HashMap<>();
@@ -748,6 +808,10 @@ public class ArtifactProcessor {
           final List<DependencyRelation> dependencyRelations =
               createDependencyRelations(model.getDependencyManagement().getDependencies());
           mvnArtifactNode.getDependencyManagement().addAll(dependencyRelations);
+          // the imports with a literal version, the others once their properties are resolved
+          dependencyRelations.stream()
+              .filter(x -> x.getScope() == DependencyScope.IMPORT)
+              .forEach(x -> prefetch(x.getTgtNode()));
         }
 
         // add for each profile a node
@@ -775,15 +839,6 @@ public class ArtifactProcessor {
     } catch (IOException ex) {
       LOGGER.error("Downloading or parsing of .pom failed with: {}", ex.getMessage());
       throw new IOException("Downloading or parsing of .pom failed with: ", ex);
-    } finally {
-      // 5. Delete temp folder contents
-      try {
-        if (pomLocation != null) {
-          Files.delete(pomLocation);
-        }
-      } catch (IOException e) {
-        // nothing to do
-      }
     }
   }
 
@@ -842,36 +897,17 @@ public class ArtifactProcessor {
     return dependencyScope;
   }
 
-  private Path downloadFilePlainURL(CustomArtifactInfo info, Path downloadFolder)
-      throws IOException {
+  /** Reads the pom.xml into memory, over the pooled connections of the repository client. */
+  private byte[] downloadPom(CustomArtifactInfo info) throws IOException {
     Stopwatch stopwatch = Stopwatch.createStarted();
 
     URL downloadURL = ArtifactUtils.constructURL(info);
     LOGGER.info("Downloading file from plain url: {}", downloadURL);
 
-    String classifier = "";
-    // handle null values coming from the database, since neo4j does not allow null, we have the
-    // string "null"
-    if (StringUtils.isNotBlank(info.getClassifier())
-        && !StringUtils.equals("null", info.getClassifier())) {
-      classifier = "-" + info.getClassifier();
-    }
-    String jarName =
-        info.getArtifactId()
-            + "-"
-            + info.getArtifactVersion()
-            + classifier
-            + "."
-            + info.getFileExtension();
-    Path fileName = downloadFolder.resolve(jarName);
-    FileUtils.copyURLToFile(downloadURL, fileName.toFile(), CONNECT_TIMEOUT, READ_TIMEOUT);
-    if (!Files.exists(fileName)) {
-      throw new IOException("Failed to download file: " + jarName);
-    }
+    final byte[] pom = repositoryClient.fetch(downloadURL);
     stopwatch.stop();
 
-    LOGGER.info(
-        "[Stats] Downloading {} took {}", fileName.getFileName().toString(), stopwatch.elapsed());
-    return fileName;
+    LOGGER.info("[Stats] Downloading {} took {}", downloadURL.getPath(), stopwatch.elapsed());
+    return pom;
   }
 }
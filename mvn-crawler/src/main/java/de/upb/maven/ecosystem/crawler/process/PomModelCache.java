@@ -0,0 +1,171 @@
+package de.upb.maven.ecosystem.crawler.process;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import de.upb.maven.ecosystem.crawler.PomFileUtil;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.maven.model.Model;
+import org.apache.maven.project.MavenProject;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The parsed POM models of all artifacts processed by a worker, shared by the {@link
+ * ArtifactProcessor}s, as the same parents and BOMs, e.g., org.apache:apache, are resolved for most
+ * artifacts. Released POMs do not change, thus, the models are keyed by their coordinates only and
+ * never expire. The cache is bounded by the bytes of the POM files, evicting the least recently
+ * used models, and concurrent lookups of the same POM download it once. The models are shared and
+ * must not be modified. If a {@link PomStore} is configured, the POMs that are not cached are read
+ * from it before they are downloaded.
+ */
+public class PomModelCache {
+  private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(PomModelCache.class);
+
+  private static final long LOG_STATS_EVERY = 10_000;
+
+  private static PomModelCache instance;
+
+  private final Cache<String, Entry> cache;
+  private final PomStore store;
+  private final AtomicLong lookups = new AtomicLong();
+  // misses of the cache read from the store
+  private final AtomicLong storeHits = new AtomicLong();
+
+  /** Fetches the content of a POM that is not cached. */
+  public interface Loader {
+    byte[] load() throws IOException;
+  }
+
+  /** A parsed model, or null if the POM is not a valid model, and the size of its file. */
+  private static class Entry {
+    private final Model model;
+    private final int bytes;
+
+    private Entry(Model model, int bytes) {
+      this.model = model;
+      this.bytes = bytes;
+    }
+  }
+
+  /** @param maxBytes the maximal size of the POM files of the cached models */
+  public PomModelCache(long maxBytes) {
+    this(maxBytes, null);
+  }
+
+  /**
+   * @param maxBytes the maximal size of the POM files of the cached models
+   * @param store the persistent store of the POMs, or null
+   */
+  public PomModelCache(long maxBytes, PomStore store) {
+    this.store = store;
+    this.cache =
+        CacheBuilder.newBuilder()
+            .maximumWeight(maxBytes)
+            .weigher((String key, Entry entry) -> entry.bytes)
+            .recordStats()
+            .build();
+  }
+
+  /** @return the cache shared by the processors of this process */
+  public static synchronized PomModelCache getInstance() {
+    if (instance == null) {
+      final long maxBytes = getMaxBytesFromEnvironment();
+      LOGGER.info("POM_CACHE_MAX_MB: {}", maxBytes >> 20);
+      instance = new PomModelCache(maxBytes, PomStore.fromEnvironment());
+    }
+    return instance;
+  }
+
+  public static long getMaxBytesFromEnvironment() {
+    String res = System.getenv("POM_CACHE_MAX_MB");
+    if (res == null || res.isEmpty()) {
+      return 256L << 20;
+    }
+    return Long.parseLong(res) << 20;
+  }
+
+  /**
+   * @return the model of the POM, loaded if it is not cached, or null if the POM is not a valid
+   *     model
+   * @throws IOException if loading the POM failed, failures are not cached
+   */
+  @Nullable
+  public Model get(
+      String groupId, String artifactId, String version, String classifier, Loader loader)
+      throws IOException {
+    if (lookups.incrementAndGet() % LOG_STATS_EVERY == 0) {
+      logStats();
+    }
+    try {
+      return cache.get(
+              key(groupId, artifactId, version, classifier),
+              () -> parse(load(groupId, artifactId, version, classifier, loader)))
+          .model;
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException("Loading the POM failed", e.getCause());
+    }
+  }
+
+  private byte[] load(
+      String groupId, String artifactId, String version, String classifier, Loader loader)
+      throws IOException {
+    if (store == null) {
+      return loader.load();
+    }
+    byte[] pom = store.get(groupId, artifactId, version, classifier);
+    if (pom != null) {
+      storeHits.incrementAndGet();
+      return pom;
+    }
+    pom = loader.load();
+    try {
+      store.put(groupId, artifactId, version, classifier, pom);
+    } catch (IOException e) {
+      LOGGER.warn("Failed to store the POM of {}:{}:{}", groupId, artifactId, version, e);
+    }
+    return pom;
+  }
+
+  /** @return if the model is cached, without counting a lookup */
+  public boolean isCached(String groupId, String artifactId, String version, String classifier) {
+    return cache.asMap().containsKey(key(groupId, artifactId, version, classifier));
+  }
+
+  private static Entry parse(byte[] pom) {
+    final MavenProject mavenProject = PomFileUtil.readPom(new ByteArrayInputStream(pom));
+    return new Entry(mavenProject == null ? null : mavenProject.getModel(), pom.length);
+  }
+
+  private static String key(String groupId, String artifactId, String version, String classifier) {
+    // neo4j does not allow null, the classifier is "null" in the database
+    if (StringUtils.isBlank(classifier) || StringUtils.equals("null", classifier)) {
+      classifier = "";
+    }
+    return groupId + ":" + artifactId + ":" + version + ":" + classifier;
+  }
+
+  public CacheStats stats() {
+    return cache.stats();
+  }
+
+  public void logStats() {
+    final CacheStats stats = cache.stats();
+    LOGGER.info(
+        "[Stats] POM cache: {} models, {} hits, {} misses ({} from the store), {} evictions, hit"
+            + " rate {}",
+        cache.size(),
+        stats.hitCount(),
+        stats.missCount(),
+        storeHits.get(),
+        stats.evictionCount(),
+        String.format("%.3f", stats.hitRate()));
+  }
+}
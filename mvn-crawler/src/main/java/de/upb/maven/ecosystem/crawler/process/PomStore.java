@@ -0,0 +1,134 @@
+package de.upb.maven.ecosystem.crawler.process;
+
+import com.google.common.hash.Hashing;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.regex.Pattern;
+import org.apache.commons.lang3.StringUtils;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A persistent store of the POM files on the local disk, as released POMs never change. Re-crawls,
+ * e.g., after a new CRAWLER_VERSION, thus, read the POMs from disk instead of the repository. The
+ * POMs are stored by the SHA-256 of their content under {@code objects/}, and referenced by their
+ * coordinates under {@code refs/}, laid out like a Maven repository. Every file is written to a
+ * temporary file and moved into place, thus, the store survives crashes and is shared by the worker
+ * processes of a host without locking. Snapshots are not stored.
+ */
+public class PomStore {
+  private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(PomStore.class);
+
+  // the coordinates become path segments, anything else is not stored
+  private static final Pattern SAFE_SEGMENT =
+      Pattern.compile("[A-Za-z0-9_\\-+~][A-Za-z0-9._\\-+~]*");
+
+  private static final Pattern SHA_256 = Pattern.compile("[0-9a-f]{64}");
+
+  private final Path objects;
+  private final Path refs;
+
+  public PomStore(Path dir) {
+    this.objects = dir.resolve("objects");
+    this.refs = dir.resolve("refs");
+  }
+
+  /** @return the store, or null if POMs are not stored */
+  public static PomStore fromEnvironment() {
+    String res = System.getenv("POM_STORE_DIR");
+    if (res == null || res.isEmpty()) {
+      return null;
+    }
+    LOGGER.info("POM_STORE_DIR: {}", res);
+    return new PomStore(Paths.get(res));
+  }
+
+  /** @return the POM, or null if it is not stored */
+  @Nullable
+  public byte[] get(String groupId, String artifactId, String version, String classifier)
+      throws IOException {
+    final Path ref = refOf(groupId, artifactId, version, classifier);
+    if (ref == null) {
+      return null;
+    }
+    try {
+      final String hash = new String(Files.readAllBytes(ref), StandardCharsets.US_ASCII).trim();
+      if (!SHA_256.matcher(hash).matches()) {
+        LOGGER.warn("Ignoring the corrupt reference {}", ref);
+        return null;
+      }
+      final byte[] pom = Files.readAllBytes(objectOf(hash));
+      if (!hash.equals(Hashing.sha256().hashBytes(pom).toString())) {
+        LOGGER.warn("Ignoring the corrupt POM {} of {}", hash, ref);
+        return null;
+      }
+      return pom;
+    } catch (NoSuchFileException e) {
+      return null;
+    }
+  }
+
+  /** Stores the POM, unless it is a snapshot or its coordinates are no valid path. */
+  public void put(String groupId, String artifactId, String version, String classifier, byte[] pom)
+      throws IOException {
+    final Path ref = refOf(groupId, artifactId, version, classifier);
+    if (ref == null || version.endsWith("-SNAPSHOT")) {
+      return;
+    }
+    final String hash = Hashing.sha256().hashBytes(pom).toString();
+    final Path object = objectOf(hash);
+    if (!Files.exists(object)) {
+      write(object, pom);
+    }
+    write(ref, hash.getBytes(StandardCharsets.US_ASCII));
+  }
+
+  private Path objectOf(String hash) {
+    return objects.resolve(hash.substring(0, 2)).resolve(hash.substring(2));
+  }
+
+  @Nullable
+  private Path refOf(String groupId, String artifactId, String version, String classifier) {
+    // neo4j does not allow null, the classifier is "null" in the database
+    final boolean hasClassifier =
+        StringUtils.isNotBlank(classifier) && !StringUtils.equals("null", classifier);
+    if (groupId == null
+        || !isSafe(artifactId)
+        || !isSafe(version)
+        || (hasClassifier && !isSafe(classifier))) {
+      return null;
+    }
+    Path dir = refs;
+    for (String segment : groupId.split("\\.", -1)) {
+      if (!isSafe(segment)) {
+        return null;
+      }
+      dir = dir.resolve(segment);
+    }
+    return dir.resolve(artifactId)
+        .resolve(version)
+        .resolve(
+            artifactId + "-" + version + (hasClassifier ? "-" + classifier : "") + ".pom.sha256");
+  }
+
+  private static boolean isSafe(String segment) {
+    return segment != null && SAFE_SEGMENT.matcher(segment).matches();
+  }
+
+  /** Writes the file atomically, concurrent writers of the same file write the same content. */
+  private static void write(Path file, byte[] content) throws IOException {
+    Files.createDirectories(file.getParent());
+    final Path tmp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+    try {
+      Files.write(tmp, content);
+      Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+}
@@ -0,0 +1,182 @@
+package de.upb.maven.ecosystem.crawler.process;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import de.upb.maven.ecosystem.crawler.PomFileUtil;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Fetches files from the Maven repositories for all {@link ArtifactProcessor}s of a worker. The
+ * connections are kept alive and reused by the connection pool of the JDK, thus, every response is
+ * read completely, including the body of errors. At most REPO_MAX_CONNECTIONS_PER_HOST requests per
+ * host are in flight, further requests wait for a free connection. The timeouts are tiered: waiting
+ * for a free connection, connecting, and every read of the response.
+ */
+public class RepositoryClient {
+  private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(RepositoryClient.class);
+
+  private static final long ACQUIRE_TIMEOUT_MS = TimeUnit.MINUTES.toMillis(5);
+  private static final int CONNECT_TIMEOUT_MS = (int) TimeUnit.SECONDS.toMillis(10);
+  private static final int READ_TIMEOUT_MS = (int) TimeUnit.SECONDS.toMillis(60);
+
+  private static RepositoryClient instance;
+
+  private final int maxConnectionsPerHost;
+  private final long acquireTimeoutMs;
+  private final int connectTimeoutMs;
+  private final int readTimeoutMs;
+  private final ConcurrentHashMap<String, Semaphore> connectionsPerHost = new ConcurrentHashMap<>();
+  private final ExecutorService executor;
+  private final AtomicLong requests = new AtomicLong();
+
+  public RepositoryClient(int maxConnectionsPerHost) {
+    this(maxConnectionsPerHost, ACQUIRE_TIMEOUT_MS, CONNECT_TIMEOUT_MS, READ_TIMEOUT_MS);
+  }
+
+  public RepositoryClient(
+      int maxConnectionsPerHost, long acquireTimeoutMs, int connectTimeoutMs, int readTimeoutMs) {
+    if (maxConnectionsPerHost < 1) {
+      throw new IllegalArgumentException("At least one connection per host is required");
+    }
+    this.maxConnectionsPerHost = maxConnectionsPerHost;
+    this.acquireTimeoutMs = acquireTimeoutMs;
+    this.connectTimeoutMs = connectTimeoutMs;
+    this.readTimeoutMs = readTimeoutMs;
+    // most files are fetched from one repository, the others get the remaining threads
+    this.executor =
+        Executors.newFixedThreadPool(
+            2 * maxConnectionsPerHost,
+            new ThreadFactoryBuilder()
+                .setNameFormat("repository-fetch-%d")
+                .setDaemon(true)
+                .build());
+  }
+
+  /** @return the client shared by the processors of this process */
+  public static synchronized RepositoryClient getInstance() {
+    if (instance == null) {
+      final int maxConnectionsPerHost = getMaxConnectionsPerHostFromEnvironment();
+      LOGGER.info("REPO_MAX_CONNECTIONS_PER_HOST: {}", maxConnectionsPerHost);
+      // the JDK keeps at most http.maxConnections (default 5) idle connections per host alive
+      if (System.getProperty("http.maxConnections") == null) {
+        System.setProperty("http.maxConnections", Integer.toString(maxConnectionsPerHost));
+      }
+      instance = new RepositoryClient(maxConnectionsPerHost);
+    }
+    return instance;
+  }
+
+  public static int getMaxConnectionsPerHostFromEnvironment() {
+    String res = System.getenv("REPO_MAX_CONNECTIONS_PER_HOST");
+    if (res == null || res.isEmpty()) {
+      return 8;
+    }
+    return Integer.parseInt(res);
+  }
+
+  /**
+   * Fetches the file in the calling thread.
+   *
+   * @return the content of the file
+   * @throws FileNotFoundException if the repository does not have the file
+   * @throws IOException if the request failed or timed out
+   */
+  public byte[] fetch(URL url) throws IOException {
+    final Semaphore connections =
+        connectionsPerHost.computeIfAbsent(
+            url.getHost() + ":" + url.getPort(), host -> new Semaphore(maxConnectionsPerHost));
+    try {
+      if (!connections.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS)) {
+        throw new SocketTimeoutException("No free connection to " + url.getHost());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting for a connection to " + url.getHost(), e);
+    }
+    try {
+      requests.incrementAndGet();
+      return request(url);
+    } finally {
+      connections.release();
+    }
+  }
+
+  /**
+   * Fetches the file in the threads of the client.
+   *
+   * @return the content of the file, completed exceptionally as {@link #fetch(URL)} fails
+   */
+  public CompletableFuture<byte[]> fetchAsync(URL url) {
+    final CompletableFuture<byte[]> result = new CompletableFuture<>();
+    executor.execute(
+        () -> {
+          try {
+            result.complete(fetch(url));
+          } catch (Throwable e) {
+            result.completeExceptionally(e);
+          }
+        });
+    return result;
+  }
+
+  private byte[] request(URL url) throws IOException {
+    final URLConnection connection = url.openConnection();
+    connection.setConnectTimeout(connectTimeoutMs);
+    connection.setReadTimeout(readTimeoutMs);
+    if (!(connection instanceof HttpURLConnection)) {
+      // e.g., file: repositories
+      try (InputStream in = connection.getInputStream()) {
+        return PomFileUtil.readFully(in);
+      }
+    }
+    final HttpURLConnection http = (HttpURLConnection) connection;
+    final int status = http.getResponseCode();
+    if (status >= 400) {
+      // read the error, otherwise the connection is closed instead of reused
+      try (InputStream error = http.getErrorStream()) {
+        if (error != null) {
+          PomFileUtil.readFully(error);
+        }
+      }
+      if (status == HttpURLConnection.HTTP_NOT_FOUND || status == HttpURLConnection.HTTP_GONE) {
+        throw new FileNotFoundException(url.toString());
+      }
+      throw new IOException("Server returned HTTP response code: " + status + " for URL: " + url);
+    }
+    try (InputStream in = http.getInputStream()) {
+      return PomFileUtil.readFully(in);
+    }
+  }
+
+  /** @return the threads of {@link #fetchAsync(URL)}, e.g., to parse the fetched files */
+  public Executor getExecutor() {
+    return executor;
+  }
+
+  public long getRequestCount() {
+    return requests.get();
+  }
+
+  public int getMaxConnectionsPerHost() {
+    return maxConnectionsPerHost;
+  }
+
+  /** Stops the threads of the client, running requests complete. */
+  public void close() {
+    executor.shutdown();
+  }
+}
@@ -0,0 +1,112 @@
+package de.upb.maven.ecosystem.crawler;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Stand-in for Maven Central. Serves the pom files of the test resources, which are named
+ * group_artifact_version.xml, in the maven repository layout. A fixed latency can be added to every
+ * request to mimic the round trip to the real repository.
+ */
+public class LocalMavenRepository implements AutoCloseable {
+
+  private final HttpServer server;
+  private final long latencyMs;
+  private final AtomicLong requests = new AtomicLong();
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final AtomicInteger maxInFlight = new AtomicInteger();
+
+  public LocalMavenRepository(long latencyMs) throws IOException {
+    this.latencyMs = latencyMs;
+    this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    this.server.createContext("/", this::handle);
+    this.server.setExecutor(Executors.newCachedThreadPool());
+    this.server.start();
+  }
+
+  /** @return the repository url, ending with a slash */
+  public String getRepoURL() {
+    return "http://localhost:" + server.getAddress().getPort() + "/";
+  }
+
+  public long getRequestCount() {
+    return requests.get();
+  }
+
+  /** @return the maximal number of requests handled at the same time */
+  public int getMaxConcurrentRequests() {
+    return maxInFlight.get();
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    requests.incrementAndGet();
+    maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+    try {
+      respond(exchange);
+    } finally {
+      inFlight.decrementAndGet();
+    }
+  }
+
+  private void respond(HttpExchange exchange) throws IOException {
+    try {
+      if (latencyMs > 0) {
+        Thread.sleep(latencyMs);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    byte[] body = null;
+    final String resource = toResourceName(exchange.getRequestURI().getPath());
+    if (resource != null) {
+      try (InputStream in = LocalMavenRepository.class.getResourceAsStream(resource)) {
+        if (in != null) {
+          ByteArrayOutputStream out = new ByteArrayOutputStream();
+          IOUtils.copy(in, out);
+          body = out.toByteArray();
+        }
+      }
+    }
+    if (body == null) {
+      exchange.sendResponseHeaders(404, -1);
+      exchange.close();
+      return;
+    }
+    exchange.sendResponseHeaders(200, body.length);
+    try (OutputStream os = exchange.getResponseBody()) {
+      os.write(body);
+    }
+  }
+
+  /**
+   * Maps /org/apache/apache/21/apache-21.pom to /org.apache_apache_21.xml
+   *
+   * @return the resource name or null if the path is not a pom in maven layout
+   */
+  private static String toResourceName(String path) {
+    final String[] segments =
+        Arrays.stream(path.split("/")).filter(s -> !s.isEmpty()).toArray(String[]::new);
+    if (segments.length < 4 || !segments[segments.length - 1].endsWith(".pom")) {
+      return null;
+    }
+    String version = segments[segments.length - 2];
+    String artifact = segments[segments.length - 3];
+    String group = String.join(".", Arrays.copyOfRange(segments, 0, segments.length - 3));
+    return "/" + group + "_" + artifact + "_" + version + ".xml";
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+  }
+}
@@ -0,0 +1,80 @@
+package de.upb.maven.ecosystem.crawler.process;
+
+import com.google.common.base.Stopwatch;
+import de.upb.maven.ecosystem.crawler.LocalMavenRepository;
+import de.upb.maven.ecosystem.crawler.PomFileUtil;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares the latency of fetching and parsing a pom.xml through a temporary file, as before, with
+ * reading it into memory. The poms are served by a local stand-in for Maven Central without
+ * latency, so the difference is the cost of the file system round trips: per pom, creating and
+ * writing the file, opening and reading it, deleting it, and a temporary directory per artifact.
+ */
+@Ignore
+public class PomFetchBenchmark {
+  private static final Logger LOGGER = LoggerFactory.getLogger(PomFetchBenchmark.class);
+
+  private static final int ROUNDS = 5;
+  private static final int FETCHES = 500;
+  private static final int TIMEOUT = 60000;
+  private static final List<String> POMS =
+      Arrays.asList(
+          "org/apache/cassandra/cassandra-thrift/1.2.0-beta2/cassandra-thrift-1.2.0-beta2.pom",
+          "org/apache/cassandra/cassandra-parent/1.2.0-beta2/cassandra-parent-1.2.0-beta2.pom",
+          "org/ops4j/pax/web/2.1.2/web-2.1.2.pom");
+
+  @Test
+  public void benchmark() throws IOException {
+    // otherwise, the delayed acks of the local server dominate the latency
+    System.setProperty("sun.net.httpserver.nodelay", "true");
+    try (LocalMavenRepository repository = new LocalMavenRepository(0)) {
+      for (int round = 0; round < ROUNDS; round++) {
+        LOGGER.info(
+            "[Benchmark] temporary file: {} us/pom, 3 file operations and a directory per pom",
+            fetch(repository.getRepoURL(), true));
+        LOGGER.info(
+            "[Benchmark] in memory: {} us/pom, no file operations",
+            fetch(repository.getRepoURL(), false));
+      }
+    }
+  }
+
+  private static String fetch(String repoURL, boolean viaFile) throws IOException {
+    Stopwatch stopwatch = Stopwatch.createStarted();
+    for (int i = 0; i < FETCHES; i++) {
+      final URL url = new URL(repoURL + POMS.get(i % POMS.size()));
+      if (viaFile) {
+        final Path dir = Files.createTempDirectory("pom");
+        final Path file = dir.resolve("pom.xml");
+        FileUtils.copyURLToFile(url, file.toFile(), TIMEOUT, TIMEOUT);
+        PomFileUtil.readPom(file);
+        Files.delete(file);
+        // the processors did not delete it, only to not leak it here
+        Files.delete(dir);
+      } else {
+        final URLConnection connection = url.openConnection();
+        connection.setConnectTimeout(TIMEOUT);
+        connection.setReadTimeout(TIMEOUT);
+        try (InputStream in = connection.getInputStream()) {
+          PomFileUtil.readPom(new ByteArrayInputStream(PomFileUtil.readFully(in)));
+        }
+      }
+    }
+    return String.format("%.1f", stopwatch.elapsed(TimeUnit.MICROSECONDS) / (double) FETCHES);
+  }
+}
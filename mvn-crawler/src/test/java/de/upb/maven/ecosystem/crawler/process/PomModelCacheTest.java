@@ -0,0 +1,86 @@
+package de.upb.maven.ecosystem.crawler.process;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.maven.model.Model;
+import org.junit.Test;
+
+public class PomModelCacheTest {
+
+  private static byte[] pom(String artifactId) {
+    return ("<project><modelVersion>4.0.0</modelVersion><groupId>org.example</groupId>"
+            + "<artifactId>"
+            + artifactId
+            + "</artifactId><version>1.0</version></project>")
+        .getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void loadsOnce() throws IOException {
+    PomModelCache cache = new PomModelCache(1 << 20);
+    AtomicInteger loads = new AtomicInteger();
+    PomModelCache.Loader loader =
+        () -> {
+          loads.incrementAndGet();
+          return pom("parent");
+        };
+    Model model = cache.get("org.example", "parent", "1.0", null, loader);
+    assertEquals("parent", model.getArtifactId());
+    // the classifier "null" of the database is no classifier
+    assertSame(model, cache.get("org.example", "parent", "1.0", "null", loader));
+    assertEquals(1, loads.get());
+    assertEquals(1, cache.stats().hitCount());
+    assertEquals(1, cache.stats().missCount());
+    // checked without counting a lookup
+    assertTrue(cache.isCached("org.example", "parent", "1.0", ""));
+    assertFalse(cache.isCached("org.example", "parent", "2.0", null));
+    assertEquals(1, cache.stats().hitCount());
+  }
+
+  @Test
+  public void invalidPomIsNull() throws IOException {
+    PomModelCache cache = new PomModelCache(1 << 20);
+    assertNull(
+        cache.get(
+            "org.example", "broken", "1.0", null, () -> "no pom".getBytes(StandardCharsets.UTF_8)));
+  }
+
+  @Test
+  public void failuresAreNotCached() throws IOException {
+    PomModelCache cache = new PomModelCache(1 << 20);
+    try {
+      cache.get(
+          "org.example",
+          "lib",
+          "1.0",
+          null,
+          () -> {
+            throw new IOException("not found");
+          });
+      fail();
+    } catch (IOException expected) {
+      assertEquals("not found", expected.getMessage());
+    }
+    assertEquals(
+        "lib", cache.get("org.example", "lib", "1.0", null, () -> pom("lib")).getArtifactId());
+  }
+
+  @Test
+  public void boundedByBytes() throws IOException {
+    // room for at most 40 of the poms
+    PomModelCache cache = new PomModelCache(40 * pom("lib-99").length);
+    for (int i = 0; i < 100; i++) {
+      final String artifactId = "lib-" + i;
+      cache.get("org.example", artifactId, "1.0", null, () -> pom(artifactId));
+    }
+    assertTrue(cache.stats().evictionCount() >= 60);
+  }
+}
@@ -0,0 +1,51 @@
+package de.upb.maven.ecosystem.crawler.process;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PomStoreTest {
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void putAndGet() throws IOException {
+    Path dir = folder.getRoot().toPath();
+    byte[] pom = "<project/>".getBytes(StandardCharsets.UTF_8);
+    PomStore store = new PomStore(dir);
+    assertNull(store.get("org.example", "lib", "1.0", null));
+
+    store.put("org.example", "lib", "1.0", null, pom);
+    store.put("org.example", "lib", "1.1", "tests", pom);
+    // survives a restart
+    store = new PomStore(dir);
+    assertArrayEquals(pom, store.get("org.example", "lib", "1.0", "null"));
+    assertArrayEquals(pom, store.get("org.example", "lib", "1.1", "tests"));
+    assertNull(store.get("org.example", "lib", "1.1", null));
+    // the same content is stored once
+    try (Stream<Path> objects = Files.walk(dir.resolve("objects"))) {
+      assertEquals(1, objects.filter(Files::isRegularFile).count());
+    }
+  }
+
+  @Test
+  public void snapshotsAndUnsafePathsAreNotStored() throws IOException {
+    PomStore store = new PomStore(folder.getRoot().toPath());
+    byte[] pom = "<project/>".getBytes(StandardCharsets.UTF_8);
+    store.put("org.example", "lib", "1.0-SNAPSHOT", null, pom);
+    store.put("org.example", "lib", "..", null, pom);
+    store.put("org..example", "lib", "1.0", null, pom);
+    assertNull(store.get("org.example", "lib", "1.0-SNAPSHOT", null));
+    assertNull(store.get("org.example", "lib", "..", null));
+    assertNull(store.get("org..example", "lib", "1.0", null));
+  }
+}
@@ -0,0 +1,67 @@
+package de.upb.maven.ecosystem.crawler.process;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import de.upb.maven.ecosystem.crawler.LocalMavenRepository;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+public class RepositoryClientTest {
+
+  private static final String POM =
+      "org/apache/cassandra/cassandra-parent/1.2.0-beta2/cassandra-parent-1.2.0-beta2.pom";
+
+  @Test
+  public void fetch() throws IOException {
+    final byte[] expected;
+    try (InputStream in =
+        RepositoryClientTest.class.getResourceAsStream(
+            "/org.apache.cassandra_cassandra-parent_1.2.0-beta2.xml")) {
+      expected = IOUtils.toByteArray(in);
+    }
+    RepositoryClient client = new RepositoryClient(2);
+    try (LocalMavenRepository repository = new LocalMavenRepository(0)) {
+      assertArrayEquals(expected, client.fetch(new URL(repository.getRepoURL() + POM)));
+      // the connection is still usable after an error
+      try {
+        client.fetch(new URL(repository.getRepoURL() + "org/example/missing/1.0/missing-1.0.pom"));
+        throw new AssertionError("Expected FileNotFoundException");
+      } catch (FileNotFoundException expectedException) {
+        // the repository does not have the pom
+      }
+      assertArrayEquals(expected, client.fetchAsync(new URL(repository.getRepoURL() + POM)).join());
+    } finally {
+      client.close();
+    }
+  }
+
+  @Test
+  public void limitsConnectionsPerHost() throws Exception {
+    RepositoryClient client = new RepositoryClient(2);
+    try (LocalMavenRepository repository = new LocalMavenRepository(100)) {
+      List<CompletableFuture<byte[]>> fetches = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        fetches.add(client.fetchAsync(new URL(repository.getRepoURL() + POM)));
+      }
+      for (CompletableFuture<byte[]> fetch : fetches) {
+        assertTrue(fetch.get().length > 0);
+      }
+      assertEquals(8, repository.getRequestCount());
+      assertTrue(repository.getMaxConcurrentRequests() <= 2);
+    } catch (ExecutionException e) {
+      throw new AssertionError(e.getCause());
+    } finally {
+      client.close();
+    }
+  }
+}
@@ -0,0 +1,238 @@
+package de.upb.maven.ecosystem.crawler.process;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Stopwatch;
+import de.upb.maven.ecosystem.WorkerExecutors;
+import de.upb.maven.ecosystem.crawler.LocalMavenRepository;
+import de.upb.maven.ecosystem.msg.CustomArtifactInfo;
+import de.upb.maven.ecosystem.persistence.dao.DaoMvnArtifactNode;
+import de.upb.maven.ecosystem.persistence.model.DependencyRelation;
+import de.upb.maven.ecosystem.persistence.model.Gavc;
+import de.upb.maven.ecosystem.persistence.model.MvnArtifactNode;
+import de.upb.maven.ecosystem.transport.Message;
+import de.upb.maven.ecosystem.transport.inprocess.InProcessTransport;
+import java.io.File;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import org.jgrapht.graph.DefaultDirectedGraph;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares the artifacts/minute of the single-threaded worker with the concurrent execution modes.
+ * The poms are served by a local stand-in for Maven Central with an artificial latency, the
+ * database is replaced by a no-op dao.
+ */
+@Ignore
+public class WorkerThroughputBenchmark {
+  private static final Logger LOGGER = LoggerFactory.getLogger(WorkerThroughputBenchmark.class);
+
+  private static final long LATENCY_MS = 50;
+  private static final int ROUNDS = 5;
+  private static final int CONCURRENCY = 64;
+
+  @Test
+  public void benchmark() throws Exception {
+    try (LocalMavenRepository repository = new LocalMavenRepository(LATENCY_MS)) {
+      final List<CustomArtifactInfo> artifacts = loadArtifacts(repository.getRepoURL());
+
+      double single =
+          run(WorkerExecutors.create(WorkerExecutors.Mode.PLATFORM, 1, "single"), artifacts);
+      double platform =
+          run(
+              WorkerExecutors.create(WorkerExecutors.Mode.PLATFORM, CONCURRENCY, "platform"),
+              artifacts);
+      double virtual =
+          run(
+              WorkerExecutors.create(WorkerExecutors.Mode.VIRTUAL, CONCURRENCY, "virtual"),
+              artifacts);
+
+      LOGGER.info("[Benchmark] single-threaded: {} artifacts/min", String.format("%.1f", single));
+      LOGGER.info(
+          "[Benchmark] platform x{}: {} artifacts/min",
+          CONCURRENCY,
+          String.format("%.1f", platform));
+      LOGGER.info(
+          "[Benchmark] virtual x{}: {} artifacts/min", CONCURRENCY, String.format("%.1f", virtual));
+    }
+  }
+
+  /** Producer and workers in one JVM, connected by the in-process transport. */
+  @Test
+  public void benchmarkInProcessTransport() throws Exception {
+    try (LocalMavenRepository repository = new LocalMavenRepository(LATENCY_MS)) {
+      final List<CustomArtifactInfo> artifacts = loadArtifacts(repository.getRepoURL());
+      final ArtifactManager manager = new ArtifactManager(new NoOpDao());
+      final ExecutorService executor =
+          WorkerExecutors.create(WorkerExecutors.Mode.PLATFORM, CONCURRENCY, "in-process");
+
+      try (InProcessTransport transport = new InProcessTransport(CONCURRENCY * 2)) {
+        transport.consume(
+            message -> {
+              manager.process(message.getPayload(CustomArtifactInfo.class), 0);
+              return null;
+            },
+            executor,
+            CONCURRENCY);
+
+        int jobs = artifacts.size() * ROUNDS;
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        for (int round = 0; round < ROUNDS; round++) {
+          for (CustomArtifactInfo artifact : artifacts) {
+            transport.publish(Message.of(null, artifact));
+          }
+        }
+        transport.awaitDelivered(TimeUnit.HOURS.toMillis(1));
+        final long elapsed = stopwatch.elapsed(TimeUnit.MILLISECONDS);
+        LOGGER.info(
+            "[Benchmark] in-process transport x{}: {} artifacts/min",
+            CONCURRENCY,
+            String.format("%.1f", jobs * 60_000.0 / Math.max(1, elapsed)));
+      }
+      executor.shutdownNow();
+    }
+  }
+
+  private double run(ExecutorService executor, List<CustomArtifactInfo> artifacts)
+      throws InterruptedException {
+    final ArtifactManager manager = new ArtifactManager(new NoOpDao());
+    int jobs = artifacts.size() * ROUNDS;
+    CountDownLatch done = new CountDownLatch(jobs);
+    Stopwatch stopwatch = Stopwatch.createStarted();
+    for (int round = 0; round < ROUNDS; round++) {
+      for (CustomArtifactInfo artifact : artifacts) {
+        executor.execute(
+            () -> {
+              try {
+                manager.process(artifact, 0);
+              } catch (Exception e) {
+                LOGGER.warn("Crawling failed", e);
+              } finally {
+                done.countDown();
+              }
+            });
+      }
+    }
+    done.await();
+    final long elapsed = stopwatch.elapsed(TimeUnit.MILLISECONDS);
+    executor.shutdown();
+    return jobs * 60_000.0 / Math.max(1, elapsed);
+  }
+
+  /** Uses every pom of the test resources as an artifact to crawl. */
+  private List<CustomArtifactInfo> loadArtifacts(String repoURL) throws URISyntaxException {
+    File resources =
+        new File(WorkerThroughputBenchmark.class.getResource("/export.csv").toURI())
+            .getParentFile();
+    List<CustomArtifactInfo> artifacts = new ArrayList<>();
+    File[] files = resources.listFiles((dir, name) -> name.endsWith(".xml"));
+    if (files == null) {
+      return artifacts;
+    }
+    for (File file : files) {
+      String name = file.getName();
+      String[] gav = name.substring(0, name.length() - ".xml".length()).split("_");
+      if (gav.length != 3) {
+        continue;
+      }
+      CustomArtifactInfo info = new CustomArtifactInfo();
+      info.setGroupId(gav[0]);
+      info.setArtifactId(gav[1]);
+      info.setArtifactVersion(gav[2]);
+      info.setPackaging("pom");
+      info.setFileExtension("pom");
+      info.setRepoURL(repoURL);
+      artifacts.add(info);
+    }
+    return artifacts;
+  }
+
+  /** Nothing is found in and nothing is written to the database. */
+  private static class NoOpDao implements DaoMvnArtifactNode {
+
+    @Override
+    public Optional<MvnArtifactNode> getParent(long id) {
+      return Optional.absent();
+    }
+
+    @Override
+    public Optional<MvnArtifactNode> getParent(MvnArtifactNode instance) {
+      return Optional.absent();
+    }
+
+    @Override
+    public Optional<DependencyRelation> getRelationship(
+        MvnArtifactNode instance, MvnArtifactNode dependency) {
+      return Optional.absent();
+    }
+
+    @Override
+    public boolean containsNodeWithVersionGQ(
+        String groupId,
+        String artifactId,
+        String version,
+        String classifier,
+        String crawlerVersion) {
+      return false;
+    }
+
+    @Override
+    public List<Gavc> findMissingOrStale(List<Gavc> gavcs, String crawlerVersion) {
+      return gavcs;
+    }
+
+    @Override
+    public void forEachArtifact(String crawlerVersion, BiConsumer<Gavc, Boolean> action) {}
+
+    @Override
+    public List<DependencyRelation> getDependencyManagement(MvnArtifactNode instance) {
+      return Collections.emptyList();
+    }
+
+    @Override
+    public List<MvnArtifactNode> getDependents(
+        String group, String artifact, String depGroup, String depArtifact, String depVersion) {
+      return Collections.emptyList();
+    }
+
+    @Override
+    public Optional<MvnArtifactNode> get(long id) {
+      return Optional.absent();
+    }
+
+    @Override
+    public Optional<MvnArtifactNode> get(MvnArtifactNode instance) {
+      return Optional.absent();
+    }
+
+    @Override
+    public DefaultDirectedGraph<MvnArtifactNode, DependencyRelation> getGraph(String query) {
+      return new DefaultDirectedGraph<>(DependencyRelation.class);
+    }
+
+    @Override
+    public List<MvnArtifactNode> getAll() {
+      return Collections.emptyList();
+    }
+
+    @Override
+    public void save(MvnArtifactNode mvnArtifactNode) {}
+
+    @Override
+    public void saveOrMerge(MvnArtifactNode instance) {}
+
+    @Override
+    public void update(MvnArtifactNode mvnArtifactNode, String[] params) {}
+
+    @Override
+    public void delete(MvnArtifactNode mvnArtifactNode) {}
+  }
+}